@@ -0,0 +1,80 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.model.City;
+import com.github.mhewedy.expressions.model.Department;
+import com.github.mhewedy.expressions.model.Employee;
+import com.github.mhewedy.expressions.model.LingualString;
+import com.github.mhewedy.expressions.model.Task;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.chrono.HijrahDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.github.mhewedy.expressions.model.Status.ACTIVE;
+import static com.github.mhewedy.expressions.model.Status.NOT_ACTIVE;
+
+/**
+ * Boots the test entities and repositories on an in-memory H2 database for the benchmarks.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EntityScan("com.github.mhewedy.expressions")
+@EnableJpaRepositories(repositoryBaseClass = ExpressionsRepositoryImpl.class, basePackages = "com.github.mhewedy.expressions")
+public class BenchmarkApplication {
+
+    static final int EMPLOYEES = 10_000;
+
+    static ConfigurableApplicationContext start() {
+        SpringApplication application = new SpringApplication(BenchmarkApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        // overrides the debug logging of the test application.yaml, which would be measured otherwise
+        ConfigurableApplicationContext context = application.run(
+                "--logging.level.com.github.mhewedy.expressions=info",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=info",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create-drop"
+        );
+        context.getBean(EmployeeRepository.class).saveAll(employees());
+        return context;
+    }
+
+    private static List<Employee> employees() {
+        List<Department> departments = List.of(
+                new Department(null, "hr", new City(null, "cairo")),
+                new Department(null, "sw arch", new City(null, "giza")),
+                new Department(null, "sales", null)
+        );
+
+        List<Employee> employees = new ArrayList<>(EMPLOYEES);
+        for (int i = 0; i < EMPLOYEES; i++) {
+            employees.add(new Employee(null,
+                    "name " + i,
+                    i % 2 == 0 ? "ibrahim" : "ahmed",
+                    new LingualString("name ar " + i, "name en " + i),
+                    LocalDate.of(1970, 1, 1).plusDays(i),
+                    HijrahDate.of(1390, 1, 1).plus(i, ChronoUnit.DAYS),
+                    i % 60,
+                    Instant.parse("2007-12-03T10:15:30.00Z").plusSeconds(i * 3600L),
+                    (short) (i % 3),
+                    i % 5 != 0,
+                    departments.get(i % departments.size()),
+                    List.of(new Task(null, "fix " + i, ACTIVE), new Task(null, "review " + i, NOT_ACTIVE)),
+                    UUID.randomUUID(),
+                    Employee.Lang.AR,
+                    Employee.Lang.EN
+            ));
+        }
+        return employees;
+    }
+}
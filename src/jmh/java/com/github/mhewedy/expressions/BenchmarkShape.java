@@ -0,0 +1,97 @@
+package com.github.mhewedy.expressions;
+
+import java.util.StringJoiner;
+
+/**
+ * The expressions shapes used by the benchmarks, as they would be received by a search endpoint.
+ */
+public enum BenchmarkShape {
+
+    /**
+     * a handful of "and"ed fields on the root entity.
+     */
+    FLAT {
+        @Override
+        String json() {
+            return """
+                    {
+                      "lastName": "ibrahim",
+                      "firstName": {"$start": "a"},
+                      "age": {"$gte": 10},
+                      "active": true,
+                      "birthDate": {"$lt": "1990-01-01"}
+                    }
+                    """;
+        }
+    },
+
+    /**
+     * fields on many-to-one and one-to-many associations.
+     */
+    JOIN {
+        @Override
+        String json() {
+            return """
+                    {
+                      "department.name": "hr",
+                      "department.city.name": {"$ne": "giza"},
+                      "tasks.name": {"$contains": "fix"}
+                    }
+                    """;
+        }
+    },
+
+    /**
+     * nested "or" and "and" groups, {@value #DEPTH} levels deep.
+     */
+    DEEP {
+        @Override
+        String json() {
+            String json = "{\"lastName\": \"ibrahim\"}";
+            for (int i = DEPTH; i > 0; i--) {
+                json = String.format(
+                        "{\"$or\": [{\"age\": {\"$gt\": %d}}, {\"$and\": [{\"firstName\": \"name %d\"}, %s]}]}",
+                        i, i, json);
+            }
+            return json;
+        }
+    },
+
+    /**
+     * a single "or" group of {@value #WIDTH} terms.
+     */
+    WIDE {
+        @Override
+        String json() {
+            StringJoiner terms = new StringJoiner(", ", "{\"$or\": [", "]}");
+            for (int i = 0; i < WIDTH; i++) {
+                terms.add(switch (i % 3) {
+                    case 0 -> String.format("{\"firstName\": \"name %d\"}", i);
+                    case 1 -> String.format("{\"lastName\": {\"$start\": \"name %d\"}}", i);
+                    default -> String.format("{\"age\": %d}", i);
+                });
+            }
+            return terms.toString();
+        }
+    },
+
+    /**
+     * a single {@code $in} of {@value #IN_SIZE} values.
+     */
+    LARGE_IN {
+        @Override
+        String json() {
+            StringJoiner values = new StringJoiner(", ", "{\"age\": {\"$in\": [", "]}}");
+            for (int i = 0; i < IN_SIZE; i++) {
+                values.add(String.valueOf(i));
+            }
+            return values.toString();
+        }
+    };
+
+    static final int DEPTH = 16;
+    static final int WIDTH = 100;
+    static final int IN_SIZE = 1000;
+
+    abstract String json();
+}
@@ -0,0 +1,74 @@
+package com.github.mhewedy.expressions;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures counting by large {@code $in} lists of ids on H2 with the built-in {@link InListStrategy} implementations,
+ * with {@value BenchmarkApplication#EMPLOYEES} employees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionsInListBenchmark {
+
+    public enum Strategy {
+        INDIVIDUAL(InListStrategy.individual()),
+        PADDED(InListStrategy.padded()),
+        CHUNKED(InListStrategy.chunked(1000)),
+        ARRAY(InListStrategy.array("array_contains"));
+
+        final InListStrategy inListStrategy;
+
+        Strategy(InListStrategy inListStrategy) {
+            this.inListStrategy = inListStrategy;
+        }
+    }
+
+    @Param({"10", "1000", "5000", "50000"})
+    public int size;
+
+    @Param
+    public Strategy strategy;
+
+    @Param({"false", "true"})
+    public boolean bindParameters;
+
+    private ConfigurableApplicationContext context;
+    private EmployeeRepository employeeRepository;
+    private Expressions expressions;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start();
+        employeeRepository = context.getBean(EmployeeRepository.class);
+
+        ExpressionsConfig.getInstance().setInListStrategy(strategy.inListStrategy);
+        ExpressionsConfig.getInstance().setBindParameters(bindParameters);
+
+        List<Long> ids = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            ids.add(i * 3);     // a third of the ids exist
+        }
+        expressions = Expression.of("id", Operator.$in, ids).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ExpressionsConfig.getInstance().setInListStrategy(InListStrategy.individual());
+        ExpressionsConfig.getInstance().setBindParameters(false);
+        context.close();
+    }
+
+    @Benchmark
+    public long count() {
+        return employeeRepository.count(expressions);
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.mhewedy.expressions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the deserialization of the json into {@link Expressions}
+ * and the conversion of {@link Expressions} into the {@link Expression} tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionsParsingBenchmark {
+
+    @Param
+    public BenchmarkShape shape;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String json;
+    private Expressions expressions;
+
+    @Setup
+    public void setup() throws Exception {
+        json = shape.json();
+        expressions = objectMapper.readValue(json, Expressions.class);
+    }
+
+    @Benchmark
+    public Expressions deserialize() throws Exception {
+        return objectMapper.readValue(json, Expressions.class);
+    }
+
+    @Benchmark
+    public List<Expression> getExpressions() {
+        return expressions.getExpressions();
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.mhewedy.expressions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.mhewedy.expressions.model.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the criteria predicate out of the {@link Expression} tree, without executing the query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionsPredicateBenchmark {
+
+    @Param
+    public BenchmarkShape shape;
+
+    @Param({"false", "true"})
+    public boolean bindParameters;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+    private List<Expression> expressions;
+
+    @Setup
+    public void setup() throws Exception {
+        context = BenchmarkApplication.start();
+        entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+        expressions = new ObjectMapper().readValue(shape.json(), Expressions.class).getExpressions();
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+        context.close();
+    }
+
+    @Benchmark
+    public Predicate getPredicate() {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Employee> query = cb.createQuery(Employee.class);
+        Root<Employee> root = query.from(Employee.class);
+
+        return ExpressionsPredicateBuilder.getPredicate(root, query, cb, expressions,
+                bindParameters ? new ArrayList<>() : null, CollectionFilterMode.DISTINCT_JOIN, new JoinRegistry());
+    }
+}
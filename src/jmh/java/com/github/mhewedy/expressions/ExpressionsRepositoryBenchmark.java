@@ -0,0 +1,60 @@
+package com.github.mhewedy.expressions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.mhewedy.expressions.model.Employee;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ExpressionsRepository} calls end to end on H2,
+ * with {@value BenchmarkApplication#EMPLOYEES} employees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionsRepositoryBenchmark {
+
+    @Param
+    public BenchmarkShape shape;
+
+    @Param
+    public CollectionFilterMode collectionFilterMode;
+
+    private final Pageable pageable = PageRequest.of(0, 20, Sort.by("id"));
+
+    private ConfigurableApplicationContext context;
+    private EmployeeRepository employeeRepository;
+    private Expressions expressions;
+
+    @Setup
+    public void setup() throws Exception {
+        context = BenchmarkApplication.start();
+        employeeRepository = context.getBean(EmployeeRepository.class);
+        expressions = new ObjectMapper().readValue(shape.json(), Expressions.class)
+                .collectionFilterMode(collectionFilterMode);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Employee> findAll() {
+        return employeeRepository.findAll(expressions, pageable);
+    }
+
+    @Benchmark
+    public long count() {
+        return employeeRepository.count(expressions);
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.mhewedy.expressions;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a string attribute of an entity (or an embeddable) as searchable case-insensitively without
+ * wrapping its column in {@code lower(...)}, so the case-insensitive operators ({@code $ieq}, {@code $istart},
+ * {@code $iend} and {@code $icontains}) can use a regular index.
+ * <p>
+ * Either the column itself has a case-insensitive collation (e.g. on MySQL):
+ * <pre>
+ * &#64;CaseInsensitive
+ * &#64;Column(columnDefinition = "varchar(255) collate utf8mb4_0900_ai_ci")
+ * public String lastName;
+ * </pre>
+ * Or the lower case value is kept in a shadow attribute (e.g. a generated column, or set on persist and update),
+ * that is matched instead:
+ * <pre>
+ * &#64;CaseInsensitive(normalizedBy = "normalizedLastName")
+ * public String lastName;
+ * &#64;Column(insertable = false, updatable = false)
+ * public String normalizedLastName;
+ * </pre>
+ * In both cases, the values of the expressions are converted to lower case.
+ */
+@Documented
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CaseInsensitive {
+
+    /**
+     * The name of the attribute (of the same entity or embeddable) holding the lower case value,
+     * empty if the column has a case-insensitive collation.
+     */
+    String normalizedBy() default "";
+}
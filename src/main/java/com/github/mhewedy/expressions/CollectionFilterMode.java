@@ -0,0 +1,31 @@
+package com.github.mhewedy.expressions;
+
+/**
+ * Controls how expressions on collection associations ({@code OneToMany} and {@code ManyToMany}) are rendered.
+ * <p>
+ * The SQL of each mode is shown for the following expression: <pre> {"tasks.name": "fix hr"} </pre>
+ *
+ * @see ExpressionsConfig#setCollectionFilterMode(CollectionFilterMode)
+ * @see Expressions#collectionFilterMode(CollectionFilterMode)
+ */
+public enum CollectionFilterMode {
+
+    /**
+     * Joins the collection and makes the query distinct, this is the default:
+     * <pre>
+     * select distinct e.* from employee e join task t on e.id = t.employee_id where t.name = ?
+     * </pre>
+     */
+    DISTINCT_JOIN,
+
+    /**
+     * Filters using a correlated subquery, which keeps the root query non-distinct,
+     * and thus makes paging and counting cheaper on large tables:
+     * <pre>
+     * select e.* from employee e where exists (select 1 from task t where e.id = t.employee_id and t.name = ?)
+     * </pre>
+     * Expressions on the same collection that are ANDed together (in the same {@code $and} group) are rendered
+     * inside the same subquery, so they have to match the same element.
+     */
+    EXISTS
+}
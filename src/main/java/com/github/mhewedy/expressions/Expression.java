@@ -47,6 +47,10 @@ public abstract class Expression {
         return new SingularExpression(field, operator, value);
     }
 
+    /**
+     * The value is kept in its iso format, the same as read from json, and is parsed to the type of the attribute
+     * when the predicate is built.
+     */
     public static Expression of(String field, Operator operator, Temporal value) {
         return new SingularExpression(field, operator, value == null ? null : DateTimeUtil.format(value));
     }
@@ -75,13 +79,35 @@ public abstract class Expression {
         return new ListExpression(field, operator, Arrays.asList(values));
     }
 
+    /**
+     * Used with operators require list of elements,
+     * such as {@link Operator#$in} and {@link Operator#$nin}
+     * <p>
+     * The values are kept in a copy of the array, and boxed one at a time when bound to the query,
+     * which suits the large lists of ids.
+     */
+    public static Expression of(String field, Operator operator, long[] values) {
+        return new ListExpression(field, operator, PrimitiveList.of(values));
+    }
+
+    /**
+     * Used with operators require list of elements,
+     * such as {@link Operator#$in} and {@link Operator#$nin}
+     * <p>
+     * The values are kept in a copy of the array, and boxed one at a time when bound to the query,
+     * which suits the large lists of ids.
+     */
+    public static Expression of(String field, Operator operator, int[] values) {
+        return new ListExpression(field, operator, PrimitiveList.of(values));
+    }
+
     /**
      * Used with operators require list of elements,
      * such as {@link Operator#$in} and {@link Operator#$nin}
      */
     public static Expression of(String field, Operator operator, Temporal... values) {
         return new ListExpression(field, operator,
-                Arrays.stream(values).map(Object::toString).collect(toList())
+                Arrays.stream(values).map(it -> it == null ? null : DateTimeUtil.format(it)).collect(toList())
         );
     }
 
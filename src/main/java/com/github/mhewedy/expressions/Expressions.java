@@ -4,10 +4,18 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import static com.github.mhewedy.expressions.Expression.*;
 import static com.github.mhewedy.expressions.Operator.$and;
@@ -34,6 +42,15 @@ import static com.github.mhewedy.expressions.Operator.$or;
  */
 public class Expressions extends HashMap<String, Object> {
 
+    private CollectionFilterMode collectionFilterMode;
+    private PaginationMode paginationMode;
+
+    /**
+     * The expressions tree as read by the {@link ExpressionsDeserializer}, the map entries are only
+     * materialized out of it when the map is accessed, which is not needed to build the query.
+     */
+    private transient List<Expression> tree;
+
     /**
      * Create a new $or expression on the root,
      * then adds to it the current expressions attached at the root
@@ -112,6 +129,10 @@ public class Expressions extends HashMap<String, Object> {
     }
 
     private Expressions append(Expression expression, Operator operator) {
+        if (tree != null) {
+            return appendToTree(expression, operator);
+        }
+
         Map<String, Object> tmp = new HashMap<>(this);
         this.clear();
 
@@ -127,6 +148,66 @@ public class Expressions extends HashMap<String, Object> {
         return this;
     }
 
+    /**
+     * Same as {@link #append(Expression, Operator)} for tree-backed expressions, without materializing the map,
+     * the current tree is not modified, as it might be shared.
+     */
+    private Expressions appendToTree(Expression expression, Operator operator) {
+        List<Expression> list = new ArrayList<>(tree.size() + 1);
+        list.add(expression);
+        if (operator == $and) {
+            list.addAll(tree);
+        } else if (!tree.isEmpty()) {
+            OrExpression orExpression = new OrExpression().add(expression);
+            if (tree.size() == 1) {
+                orExpression.add(tree.get(0));
+            } else {
+                AndExpression andExpression = new AndExpression();
+                tree.forEach(andExpression::add);
+                orExpression.add(andExpression);
+            }
+            list.set(0, orExpression);
+        }
+        tree = list;
+        return this;
+    }
+
+    /**
+     * Overrides the {@link ExpressionsConfig#getCollectionFilterMode() global collection filter mode}
+     * for queries using this expressions object.
+     * <p>
+     * Example:
+     * <pre>
+     *  employeeRepository.findAll(expressions.collectionFilterMode(CollectionFilterMode.EXISTS), pageable);
+     * </pre>
+     */
+    public Expressions collectionFilterMode(CollectionFilterMode collectionFilterMode) {
+        this.collectionFilterMode = collectionFilterMode;
+        return this;
+    }
+
+    CollectionFilterMode getCollectionFilterMode() {
+        return collectionFilterMode != null ? collectionFilterMode : ExpressionsConfig.getInstance().getCollectionFilterMode();
+    }
+
+    /**
+     * Overrides the {@link ExpressionsConfig#getPaginationMode() global pagination mode}
+     * for queries using this expressions object.
+     * <p>
+     * Example:
+     * <pre>
+     *  employeeRepository.findAll(expressions.paginationMode(PaginationMode.IDS_FIRST), pageable);
+     * </pre>
+     */
+    public Expressions paginationMode(PaginationMode paginationMode) {
+        this.paginationMode = paginationMode;
+        return this;
+    }
+
+    PaginationMode getPaginationMode() {
+        return paginationMode != null ? paginationMode : ExpressionsConfig.getInstance().getPaginationMode();
+    }
+
     public <T> Specification<T> getSpecification() {
         return new ExpressionsRepositoryImpl.ExpressionsSpecification<>(this);
     }
@@ -137,92 +218,153 @@ public class Expressions extends HashMap<String, Object> {
         return expressions;
     }
 
+    /**
+     * Creates expressions backed by the tree, where the top level expressions are implicitly "and"ed.
+     */
+    static Expressions of(List<Expression> tree) {
+        Expressions expressions = new Expressions();
+        expressions.tree = tree;
+        return expressions;
+    }
+
+    /**
+     * Converts the tree into map entries, once materialized the map becomes the source of truth,
+     * as it can be modified.
+     */
+    private void materialize() {
+        if (tree == null) {
+            return;
+        }
+        List<Expression> expressions = tree;
+        tree = null;
+        if (expressions.size() == 1) {
+            addToMap(expressions.get(0), this);
+        } else if (!expressions.isEmpty()) {
+            AndExpression andExpression = new AndExpression();
+            expressions.forEach(andExpression::add);
+            addToMap(andExpression, this);
+        }
+    }
+
     /**
      * The bridge between {@link Expression} and the internal representation of mongodb query lang
      * represented by {@link Expressions} class.
+     * <p>
+     * The nested groups are converted using an explicit stack instead of recursion, to support deeply nested expressions.
      */
     private static void addToMap(Expression expression, Map<String, Object> map) {
-        if (expression instanceof SingularExpression se) {
-            if (se.operator == Operator.$eq) {
-                map.put(se.field, se.value);
-            } else {
-                map.put(se.field, mapOf(se.operator.name(), se.value));
-            }
-        } else if (expression instanceof ListExpression le) {
-            if (le.operator == Operator.$eq) {
-                map.put(le.field, le.values);
-            } else {
-                map.put(le.field, mapOf(le.operator.name(), le.values));
+        Deque<Pending> stack = new ArrayDeque<>();
+        stack.push(new Pending(expression, map));
+
+        while (!stack.isEmpty()) {
+            Pending pending = stack.pop();
+            Expression e = pending.expression();
+            Map<String, Object> m = pending.map();
+
+            if (e instanceof SingularExpression se) {
+                if (se.operator == Operator.$eq) {
+                    m.put(se.field, se.value);
+                } else {
+                    m.put(se.field, mapOf(se.operator.name(), se.value));
+                }
+            } else if (e instanceof ListExpression le) {
+                if (le.operator == Operator.$eq) {
+                    m.put(le.field, le.values);
+                } else {
+                    m.put(le.field, mapOf(le.operator.name(), le.values));
+                }
+            } else if (e instanceof OrExpression oe) {
+                m.put($or.name(), toMaps(oe.expressions, stack));
+            } else if (e instanceof AndExpression ae) {
+                m.put($and.name(), toMaps(ae.expressions, stack));
             }
-        } else if (expression instanceof OrExpression oe) {
-            map.put($or.name(),
-                    oe.expressions.stream().map(it -> {
-                        Map<String, Object> m = new HashMap<>();
-                        addToMap(it, m);
-                        return m;
-                    }).toList()
-            );
-        } else if (expression instanceof AndExpression ae) {
-            map.put($and.name(),
-                    ae.expressions.stream().map(it -> {
-                        Map<String, Object> m = new HashMap<>();
-                        addToMap(it, m);
-                        return m;
-                    }).toList()
-            );
         }
     }
 
+    /**
+     * @return the (yet empty) maps of the expressions, the expressions are pushed to the stack to fill them.
+     */
+    private static List<Map<String, Object>> toMaps(List<Expression> expressions, Deque<Pending> stack) {
+        List<Map<String, Object>> maps = new ArrayList<>(expressions.size());
+        for (Expression expression : expressions) {
+            Map<String, Object> m = new HashMap<>();
+            maps.add(m);
+            stack.push(new Pending(expression, m));
+        }
+        return Collections.unmodifiableList(maps);
+    }
+
+    private record Pending(Expression expression, Map<String, Object> map) {
+    }
+
     List<Expression> getExpressions() {
-        return getExpressions(this);
+        List<Expression> expressions = tree;
+        return expressions != null ? expressions : getExpressions(this);
     }
 
     /**
      * Returns this object as list of {@link Expression} to be passed to
      * Spring Data Specification builder {@link ExpressionsPredicateBuilder}
+     * <p>
+     * The maps of {@code $and} and {@code $or} are converted using an explicit stack instead of recursion,
+     * to support deeply nested expressions. All the entries of a map, and all the operators of a field, are "and"ed,
+     * the same as the {@link ExpressionsDeserializer}.
      */
     @SuppressWarnings({"unchecked"})
     private static List<Expression> getExpressions(Map<String, Object> map) {
 
         List<Expression> expressions = new ArrayList<>();
 
-        for (Entry<String, Object> entry : map.entrySet()) {
-
-            String key = entry.getKey();
-            Object value = entry.getValue();
-
-            if ($or.name().equalsIgnoreCase(key)) {
-                List<Map<String, Object>> valueList = (List<Map<String, Object>>) value;
-
-                OrExpression orExpression = new OrExpression();
-                expressions.add(orExpression);
-
-                for (Map<String, Object> valueMap : valueList) {
-                    orExpression.expressions.add(getExpressions(valueMap).get(0));
-                }
-            } else if ($and.name().equalsIgnoreCase(key)) {
-                List<Map<String, Object>> valueList = (List<Map<String, Object>>) value;
-
-                AndExpression andExpression = new AndExpression();
-                expressions.add(andExpression);
-
-                for (Map<String, Object> valueMap : valueList) {
-                    andExpression.expressions.add(getExpressions(valueMap).get(0));
+        // the maps to convert, and the list to add their expressions to
+        Deque<Pending> stack = new ArrayDeque<>();
+        stack.push(new Pending(null, map));
+
+        while (!stack.isEmpty()) {
+            Pending pending = stack.pop();
+            // the maps of the groups (i.e. having a parent expression) contribute a single expression to the group
+            List<Expression> target = pending.expression() == null ? expressions : new ArrayList<>(1);
+
+            for (Entry<String, Object> entry : pending.map().entrySet()) {
+
+                String key = entry.getKey();
+                Object value = entry.getValue();
+
+                if ($or.name().equalsIgnoreCase(key)) {
+                    OrExpression orExpression = new OrExpression();
+                    target.add(orExpression);
+                    pushAll((List<Map<String, Object>>) value, orExpression, stack);
+                } else if ($and.name().equalsIgnoreCase(key)) {
+                    AndExpression andExpression = new AndExpression();
+                    target.add(andExpression);
+                    pushAll((List<Map<String, Object>>) value, andExpression, stack);
+                } else {
+                    if (value instanceof Map) { // value in the form of {"$operator": "value"}
+                        Map<String, Object> valueMap = ((Map<String, Object>) value);
+                        if (valueMap.isEmpty()) {
+                            throw new IllegalArgumentException("operator is missing for field: " + key);
+                        }
+                        for (Entry<String, Object> operatorEntry : valueMap.entrySet()) {
+                            Operator operator = Operator.valueOf(operatorEntry.getKey());
+
+                            if (operator.isList) {
+                                target.add(new ListExpression(key, operator, operatorEntry.getValue()));
+                            } else {
+                                target.add(new SingularExpression(key, operator, operatorEntry.getValue()));
+                            }
+                        }
+                    } else { // operator is "$eq"
+                        target.add(new SingularExpression(key, Operator.$eq, value));
+                    }
                 }
-            } else {
-                if (value instanceof Map) { // value in the form of {"$operator": "value"}
-                    Map<String, Object> valueMap = ((Map<String, Object>) value);
-                    Entry<String, Object> first = valueMap.entrySet().iterator().next();
-
-                    Operator operator = Operator.valueOf(first.getKey());
+            }
 
-                    if (operator.isList) {
-                        expressions.add(new ListExpression(key, operator, first.getValue()));
-                    } else {
-                        expressions.add(new SingularExpression(key, operator, first.getValue()));
-                    }
-                } else { // operator is "$eq"
-                    expressions.add(new SingularExpression(key, Operator.$eq, value));
+            if (pending.expression() != null) {
+                if (target.size() == 1) {
+                    children(pending.expression()).add(target.get(0));
+                } else {
+                    AndExpression andExpression = new AndExpression();
+                    andExpression.expressions.addAll(target);
+                    children(pending.expression()).add(andExpression);
                 }
             }
         }
@@ -230,6 +372,19 @@ public class Expressions extends HashMap<String, Object> {
         return expressions;
     }
 
+    /**
+     * Pushes the maps in reverse order, so they are popped, and their expressions are added to the group, in order.
+     */
+    private static void pushAll(List<Map<String, Object>> valueList, Expression group, Deque<Pending> stack) {
+        for (int i = valueList.size() - 1; i >= 0; i--) {
+            stack.push(new Pending(group, valueList.get(i)));
+        }
+    }
+
+    private static List<Expression> children(Expression group) {
+        return group instanceof OrExpression oe ? oe.expressions : ((AndExpression) group).expressions;
+    }
+
     private static Map<String, Object> mapOf(String key, Object value) {
         Map<String, Object> m = new HashMap<>();
         m.put(key, value);
@@ -269,7 +424,7 @@ public class Expressions extends HashMap<String, Object> {
      * @return a list of Fields containing field names, values and operators.
      */
     public List<Field> extractFields() {
-        return extractFields(getExpressions(this));
+        return extractFields(getExpressions());
     }
 
     private static List<Field> extractFields(List<Expression> expressionList) {
@@ -289,4 +444,155 @@ public class Expressions extends HashMap<String, Object> {
     }
 
     public record Field(String name, Object value, Operator operator) {}
+
+    // the map api materializes the tree first, so all the public methods of HashMap have to be overridden
+
+    @Override
+    public int size() {
+        materialize();
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        materialize();
+        return super.isEmpty();
+    }
+
+    @Override
+    public Object get(Object key) {
+        materialize();
+        return super.get(key);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        materialize();
+        return super.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        materialize();
+        return super.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        materialize();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        materialize();
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+        materialize();
+        super.putAll(m);
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        materialize();
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        materialize();
+        return super.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        materialize();
+        return super.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        materialize();
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+        materialize();
+        return super.replace(key, value);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+        materialize();
+        super.replaceAll(function);
+    }
+
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+        materialize();
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        materialize();
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        materialize();
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        materialize();
+        return super.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void clear() {
+        tree = null;
+        super.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        materialize();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        materialize();
+        return super.values();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        materialize();
+        return super.entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        materialize();
+        super.forEach(action);
+    }
+
+    @Override
+    public Object clone() {
+        materialize();
+        return super.clone();
+    }
+
+    private Object writeReplace() {
+        materialize();
+        return this;
+    }
 }
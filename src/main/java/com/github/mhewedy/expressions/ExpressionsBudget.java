@@ -0,0 +1,191 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.ExpressionsBudgetExceededException.Violation;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The maximum {@link ExpressionsCost} of the queries of an entity, registered using
+ * {@link ExpressionsConfig#setBudget(Class, ExpressionsBudget)} or as the default of all entities
+ * using {@link ExpressionsConfig#setDefaultBudget(ExpressionsBudget)}, example:
+ * <pre>
+ * ExpressionsConfig.getInstance().setBudget(Employee.class, ExpressionsBudget.unlimited()
+ *         .withMaximumJoins(3)
+ *         .withMaximumLeadingWildcards(1)
+ *         .withMaximumInValues(1000)
+ *         .withDowngrade(true));
+ * </pre>
+ * Queries over budget are rejected with an {@link ExpressionsBudgetExceededException}, unless the budget allows
+ * to downgrade them, which filters the collections using {@link CollectionFilterMode#EXISTS} instead of distinct joins,
+ * if that brings the query within the budget.
+ */
+public final class ExpressionsBudget {
+
+    private static final ExpressionsBudget UNLIMITED = new ExpressionsBudget(Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, false);
+
+    private final int maximumDepth;
+    private final int maximumTerms;
+    private final int maximumJoins;
+    private final int maximumDistinctJoins;
+    private final int maximumLeadingWildcards;
+    private final int maximumInValues;
+    private final long maximumEstimate;
+    private final boolean downgrade;
+
+    private ExpressionsBudget(int maximumDepth, int maximumTerms, int maximumJoins, int maximumDistinctJoins,
+                              int maximumLeadingWildcards, int maximumInValues, long maximumEstimate,
+                              boolean downgrade) {
+        this.maximumDepth = maximumDepth;
+        this.maximumTerms = maximumTerms;
+        this.maximumJoins = maximumJoins;
+        this.maximumDistinctJoins = maximumDistinctJoins;
+        this.maximumLeadingWildcards = maximumLeadingWildcards;
+        this.maximumInValues = maximumInValues;
+        this.maximumEstimate = maximumEstimate;
+        this.downgrade = downgrade;
+    }
+
+    /**
+     * The budget without any limit, to start from.
+     */
+    public static ExpressionsBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * @see ExpressionsCost#depth()
+     */
+    public ExpressionsBudget withMaximumDepth(int maximumDepth) {
+        Assert.isTrue(maximumDepth >= 0, "maximumDepth must not be negative!");
+        return new ExpressionsBudget(maximumDepth, maximumTerms, maximumJoins, maximumDistinctJoins,
+                maximumLeadingWildcards, maximumInValues, maximumEstimate, downgrade);
+    }
+
+    /**
+     * @see ExpressionsCost#terms()
+     */
+    public ExpressionsBudget withMaximumTerms(int maximumTerms) {
+        Assert.isTrue(maximumTerms >= 0, "maximumTerms must not be negative!");
+        return new ExpressionsBudget(maximumDepth, maximumTerms, maximumJoins, maximumDistinctJoins,
+                maximumLeadingWildcards, maximumInValues, maximumEstimate, downgrade);
+    }
+
+    /**
+     * @see ExpressionsCost#joins()
+     */
+    public ExpressionsBudget withMaximumJoins(int maximumJoins) {
+        Assert.isTrue(maximumJoins >= 0, "maximumJoins must not be negative!");
+        return new ExpressionsBudget(maximumDepth, maximumTerms, maximumJoins, maximumDistinctJoins,
+                maximumLeadingWildcards, maximumInValues, maximumEstimate, downgrade);
+    }
+
+    /**
+     * @see ExpressionsCost#distinctJoins()
+     */
+    public ExpressionsBudget withMaximumDistinctJoins(int maximumDistinctJoins) {
+        Assert.isTrue(maximumDistinctJoins >= 0, "maximumDistinctJoins must not be negative!");
+        return new ExpressionsBudget(maximumDepth, maximumTerms, maximumJoins, maximumDistinctJoins,
+                maximumLeadingWildcards, maximumInValues, maximumEstimate, downgrade);
+    }
+
+    /**
+     * @see ExpressionsCost#leadingWildcards()
+     */
+    public ExpressionsBudget withMaximumLeadingWildcards(int maximumLeadingWildcards) {
+        Assert.isTrue(maximumLeadingWildcards >= 0, "maximumLeadingWildcards must not be negative!");
+        return new ExpressionsBudget(maximumDepth, maximumTerms, maximumJoins, maximumDistinctJoins,
+                maximumLeadingWildcards, maximumInValues, maximumEstimate, downgrade);
+    }
+
+    /**
+     * @see ExpressionsCost#inValues()
+     */
+    public ExpressionsBudget withMaximumInValues(int maximumInValues) {
+        Assert.isTrue(maximumInValues >= 0, "maximumInValues must not be negative!");
+        return new ExpressionsBudget(maximumDepth, maximumTerms, maximumJoins, maximumDistinctJoins,
+                maximumLeadingWildcards, maximumInValues, maximumEstimate, downgrade);
+    }
+
+    /**
+     * @see ExpressionsCost#estimate()
+     */
+    public ExpressionsBudget withMaximumEstimate(long maximumEstimate) {
+        Assert.isTrue(maximumEstimate >= 0, "maximumEstimate must not be negative!");
+        return new ExpressionsBudget(maximumDepth, maximumTerms, maximumJoins, maximumDistinctJoins,
+                maximumLeadingWildcards, maximumInValues, maximumEstimate, downgrade);
+    }
+
+    /**
+     * @param downgrade if true, the queries over budget because of their distinct joins are filtered using
+     *                  {@link CollectionFilterMode#EXISTS} instead of being rejected, if that brings them
+     *                  within the budget.
+     */
+    public ExpressionsBudget withDowngrade(boolean downgrade) {
+        return new ExpressionsBudget(maximumDepth, maximumTerms, maximumJoins, maximumDistinctJoins,
+                maximumLeadingWildcards, maximumInValues, maximumEstimate, downgrade);
+    }
+
+    public int getMaximumDepth() {
+        return maximumDepth;
+    }
+
+    public int getMaximumTerms() {
+        return maximumTerms;
+    }
+
+    public int getMaximumJoins() {
+        return maximumJoins;
+    }
+
+    public int getMaximumDistinctJoins() {
+        return maximumDistinctJoins;
+    }
+
+    public int getMaximumLeadingWildcards() {
+        return maximumLeadingWildcards;
+    }
+
+    public int getMaximumInValues() {
+        return maximumInValues;
+    }
+
+    public long getMaximumEstimate() {
+        return maximumEstimate;
+    }
+
+    public boolean isDowngrade() {
+        return downgrade;
+    }
+
+    /**
+     * @return the limits exceeded by the cost, empty if within the budget.
+     */
+    List<Violation> violations(ExpressionsCost cost) {
+        List<Violation> violations = new ArrayList<>(0);
+        check(violations, "depth", cost.depth(), maximumDepth);
+        check(violations, "terms", cost.terms(), maximumTerms);
+        check(violations, "joins", cost.joins(), maximumJoins);
+        check(violations, "distinctJoins", cost.distinctJoins(), maximumDistinctJoins);
+        check(violations, "leadingWildcards", cost.leadingWildcards(), maximumLeadingWildcards);
+        check(violations, "inValues", cost.inValues(), maximumInValues);
+        check(violations, "estimate", cost.estimate(), maximumEstimate);
+        return violations;
+    }
+
+    private static void check(List<Violation> violations, String limit, long value, long maximum) {
+        if (value > maximum) {
+            violations.add(new Violation(limit, value, maximum));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ExpressionsBudget(maximumDepth=" + maximumDepth + ", maximumTerms=" + maximumTerms +
+                ", maximumJoins=" + maximumJoins + ", maximumDistinctJoins=" + maximumDistinctJoins +
+                ", maximumLeadingWildcards=" + maximumLeadingWildcards + ", maximumInValues=" + maximumInValues +
+                ", maximumEstimate=" + maximumEstimate + ", downgrade=" + downgrade + ")";
+    }
+}
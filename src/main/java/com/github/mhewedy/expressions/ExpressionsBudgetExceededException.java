@@ -0,0 +1,52 @@
+package com.github.mhewedy.expressions;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown when the {@link ExpressionsCost} of a query exceeds the {@link ExpressionsBudget} of its entity,
+ * with the cost and the exceeded limits, e.g. to be returned as a structured error to the client.
+ * <p>
+ * When thrown through the repositories, it's translated by spring data into an
+ * {@link org.springframework.dao.InvalidDataAccessApiUsageException} having this exception as its cause.
+ */
+public class ExpressionsBudgetExceededException extends IllegalArgumentException {
+
+    private final Class<?> entityType;
+    private final ExpressionsCost cost;
+    private final List<Violation> violations;
+
+    public ExpressionsBudgetExceededException(Class<?> entityType, ExpressionsCost cost, List<Violation> violations) {
+        super(String.format("expressions of %s exceed the budget: %s", entityType.getSimpleName(),
+                violations.stream().map(Violation::toString).collect(Collectors.joining(", "))));
+        this.entityType = entityType;
+        this.cost = cost;
+        this.violations = List.copyOf(violations);
+    }
+
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    public ExpressionsCost getCost() {
+        return cost;
+    }
+
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+    /**
+     * @param limit   the name of the exceeded limit, one of the components of {@link ExpressionsCost},
+     *                e.g. {@code joins} or {@code estimate}.
+     * @param value   the value of the query.
+     * @param maximum the maximum allowed by the budget.
+     */
+    public record Violation(String limit, long value, long maximum) {
+
+        @Override
+        public String toString() {
+            return limit + " " + value + " > " + maximum;
+        }
+    }
+}
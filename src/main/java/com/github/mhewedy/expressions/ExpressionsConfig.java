@@ -0,0 +1,241 @@
+package com.github.mhewedy.expressions;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Global configurations used by {@link ExpressionsRepository} when converting {@link Expressions} into queries.
+ * <p>
+ * The configurations are expected to be set once at the application startup, example:
+ * <pre>
+ * ExpressionsConfig.getInstance().setBindParameters(true);
+ * </pre>
+ */
+public final class ExpressionsConfig {
+
+    private static final ExpressionsConfig INSTANCE = new ExpressionsConfig();
+
+    private volatile boolean bindParameters = false;
+    private volatile boolean optimizeExpressions = false;
+    private volatile boolean prefixMatchAsRange = false;
+    private volatile CollectionFilterMode collectionFilterMode = CollectionFilterMode.DISTINCT_JOIN;
+    private volatile PaginationMode paginationMode = PaginationMode.OFFSET;
+    private volatile InListStrategy inListStrategy = InListStrategy.individual();
+    private volatile int streamFetchSize = 1000;
+    private volatile int streamClearInterval = 1000;
+    private volatile int maximumDepth = 1000;
+    private volatile int maximumTerms = 10_000;
+    private volatile ExpressionsBudget defaultBudget;
+    private final Map<Class<?>, ValueConverter<?>> valueConverters = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ExpressionsBudget> budgets = new ConcurrentHashMap<>();
+
+    private ExpressionsConfig() {
+    }
+
+    public static ExpressionsConfig getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isBindParameters() {
+        return bindParameters;
+    }
+
+    /**
+     * When enabled, the values are bound as JPA parameters ({@code CriteriaBuilder#parameter}) on the query
+     * created by the {@link ExpressionsRepository} instead of passing them as literals to the criteria api,
+     * so the same expressions shape always renders the same SQL regardless of the values and
+     * regardless of the persistence provider literal handling mode.
+     * <p>
+     * Has no effect on specifications obtained using {@link Expressions#getSpecification()},
+     * as the caller owns the query in such case.
+     */
+    public void setBindParameters(boolean bindParameters) {
+        this.bindParameters = bindParameters;
+    }
+
+    public boolean isOptimizeExpressions() {
+        return optimizeExpressions;
+    }
+
+    /**
+     * When enabled, the expressions are simplified before being converted into a query
+     * (e.g. {@code age = 10 or age = 20} becomes {@code age in (10, 20)}),
+     * and expressions that can never match (e.g. {@code age > 30 and age < 20}) are answered by the
+     * {@link ExpressionsRepository} without querying the database.
+     */
+    public void setOptimizeExpressions(boolean optimizeExpressions) {
+        this.optimizeExpressions = optimizeExpressions;
+    }
+
+    public boolean isPrefixMatchAsRange() {
+        return prefixMatchAsRange;
+    }
+
+    /**
+     * When enabled, {@code $start} on string attributes (and {@code $istart} on {@link CaseInsensitive} attributes)
+     * is rendered as a half-open range ({@code col >= 'abc' and col < 'abd'}) instead of {@code col like 'abc%'},
+     * which can use an index on the column regardless of the database support of prefix {@code like}.
+     * <p>
+     * The range relies on the collation of the column ordering the strings by their characters,
+     * values having the {@code %} or {@code _} wildcards are still rendered using {@code like}.
+     */
+    public void setPrefixMatchAsRange(boolean prefixMatchAsRange) {
+        this.prefixMatchAsRange = prefixMatchAsRange;
+    }
+
+    public CollectionFilterMode getCollectionFilterMode() {
+        return collectionFilterMode;
+    }
+
+    /**
+     * Sets the default way of filtering on collection associations,
+     * it can be overridden per call using {@link Expressions#collectionFilterMode(CollectionFilterMode)}.
+     */
+    public void setCollectionFilterMode(CollectionFilterMode collectionFilterMode) {
+        Assert.notNull(collectionFilterMode, "collectionFilterMode must not be null!");
+        this.collectionFilterMode = collectionFilterMode;
+    }
+
+    public PaginationMode getPaginationMode() {
+        return paginationMode;
+    }
+
+    /**
+     * Sets the default way of fetching pages,
+     * it can be overridden per call using {@link Expressions#paginationMode(PaginationMode)}.
+     */
+    public void setPaginationMode(PaginationMode paginationMode) {
+        Assert.notNull(paginationMode, "paginationMode must not be null!");
+        this.paginationMode = paginationMode;
+    }
+
+    public InListStrategy getInListStrategy() {
+        return inListStrategy;
+    }
+
+    /**
+     * Sets how the {@code $in} and {@code $nin} lists are rendered, defaults to {@link InListStrategy#individual()}.
+     */
+    public void setInListStrategy(InListStrategy inListStrategy) {
+        Assert.notNull(inListStrategy, "inListStrategy must not be null!");
+        this.inListStrategy = inListStrategy;
+    }
+
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    /**
+     * The JDBC fetch size used by {@link ExpressionsRepository#streamAll(Expressions, org.springframework.data.domain.Sort)},
+     * that is the number of rows fetched from the database per round trip.
+     */
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    public int getStreamClearInterval() {
+        return streamClearInterval;
+    }
+
+    /**
+     * The number of entities after which {@link ExpressionsRepository#streamAll(Expressions, org.springframework.data.domain.Sort)}
+     * detaches the streamed entities to keep the memory bounded, {@code 0} disables detaching.
+     */
+    public void setStreamClearInterval(int streamClearInterval) {
+        Assert.isTrue(streamClearInterval >= 0, "streamClearInterval must not be negative!");
+        this.streamClearInterval = streamClearInterval;
+    }
+
+    public int getMaximumDepth() {
+        return maximumDepth;
+    }
+
+    /**
+     * The maximum nesting of the {@code $and} and {@code $or} groups, defaults to {@code 1000},
+     * deeper expressions are rejected by an {@link IllegalArgumentException} before building the query.
+     */
+    public void setMaximumDepth(int maximumDepth) {
+        Assert.isTrue(maximumDepth > 0, "maximumDepth must be greater than zero!");
+        this.maximumDepth = maximumDepth;
+    }
+
+    public int getMaximumTerms() {
+        return maximumTerms;
+    }
+
+    /**
+     * The maximum number of terms (e.g. {@code {"age": {"$gt": 10}}}, a {@code $in} list is a single term),
+     * defaults to {@code 10000}, larger expressions are rejected by an {@link IllegalArgumentException}
+     * before building the query.
+     */
+    public void setMaximumTerms(int maximumTerms) {
+        Assert.isTrue(maximumTerms > 0, "maximumTerms must be greater than zero!");
+        this.maximumTerms = maximumTerms;
+    }
+
+    public ExpressionsBudget getDefaultBudget() {
+        return defaultBudget;
+    }
+
+    /**
+     * The budget of the queries of the entities without their own budget, defaults to {@code null} (no budget).
+     *
+     * @see #setBudget(Class, ExpressionsBudget)
+     */
+    public void setDefaultBudget(ExpressionsBudget defaultBudget) {
+        this.defaultBudget = defaultBudget;
+    }
+
+    /**
+     * Sets the budget of the queries of the given entity, replacing the default budget for that entity,
+     * queries over budget are rejected by an {@link ExpressionsBudgetExceededException} before being built.
+     */
+    public void setBudget(Class<?> entityType, ExpressionsBudget budget) {
+        Assert.notNull(entityType, "entityType must not be null!");
+        Assert.notNull(budget, "budget must not be null!");
+        budgets.put(entityType, budget);
+    }
+
+    /**
+     * Removes the budget of the given entity, restoring the default budget for that entity.
+     */
+    public void removeBudget(Class<?> entityType) {
+        Assert.notNull(entityType, "entityType must not be null!");
+        budgets.remove(entityType);
+    }
+
+    /**
+     * @return the budget of the given entity, or the default budget, or null if none.
+     */
+    ExpressionsBudget getBudget(Class<?> entityType) {
+        ExpressionsBudget budget = budgets.get(entityType);
+        return budget != null ? budget : defaultBudget;
+    }
+
+    /**
+     * Registers the converter of the values of the expressions compared to attributes of the given type,
+     * replacing the built-in converter of the type if any.
+     */
+    public <T> void registerValueConverter(Class<T> type, ValueConverter<? extends T> converter) {
+        Assert.notNull(type, "type must not be null!");
+        Assert.notNull(converter, "converter must not be null!");
+        valueConverters.put(ClassUtils.resolvePrimitiveIfNecessary(type), converter);
+        ExpressionsPlanCache.getInstance().clear();   // the converters are resolved into the plans
+    }
+
+    /**
+     * Removes the registered converter of the given type, restoring the built-in converter if any.
+     */
+    public void removeValueConverter(Class<?> type) {
+        Assert.notNull(type, "type must not be null!");
+        valueConverters.remove(ClassUtils.resolvePrimitiveIfNecessary(type));
+        ExpressionsPlanCache.getInstance().clear();
+    }
+
+    ValueConverter<?> getValueConverter(Class<?> type) {
+        return valueConverters.get(type);
+    }
+}
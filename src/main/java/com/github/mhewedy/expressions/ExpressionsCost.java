@@ -0,0 +1,115 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.Expression.AndExpression;
+import com.github.mhewedy.expressions.Expression.ListExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+import com.github.mhewedy.expressions.Expression.SingularExpression;
+import com.github.mhewedy.expressions.ExpressionsPlan.Hop;
+import jakarta.persistence.metamodel.ManagedType;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The estimated cost of the query of the expressions on an entity, checked against the {@link ExpressionsBudget}
+ * of the entity before the query is built.
+ *
+ * @param depth            the nesting of the {@code $and} and {@code $or} groups.
+ * @param terms            the number of terms, a {@code $in} list is a single term.
+ * @param joins            the number of distinct associations joined, e.g. {@code department.city.name} joins two.
+ * @param distinctJoins    the number of distinct collection associations joined, which multiply the rows
+ *                         to be de-duplicated using {@code distinct}, none if filtered using
+ *                         {@link CollectionFilterMode#EXISTS}.
+ * @param leadingWildcards the number of {@code like} terms starting with a wildcard (e.g. {@code $contains}),
+ *                         which can't use an index.
+ * @param inValues         the number of values of all the {@code $in} and {@code $nin} terms.
+ */
+public record ExpressionsCost(int depth, int terms, int joins, int distinctJoins, int leadingWildcards, int inValues) {
+
+    /**
+     * A rough single figure of the cost: each term counts 1, each 100 values of {@code $in} count 1,
+     * each join 10, each distinct join 100 and each leading wildcard 50.
+     */
+    public long estimate() {
+        return terms + inValues / 100 + 10L * joins + 100L * distinctJoins + 50L * leadingWildcards;
+    }
+
+    /**
+     * Computes the cost using an explicit stack, the fields are resolved the same way (and using the same cache)
+     * as when building the query.
+     *
+     * @throws IllegalArgumentException if a field doesn't exist.
+     */
+    static ExpressionsCost of(ManagedType<?> type, List<Expression> expressions, CollectionFilterMode mode) {
+        int depth = 0, terms = 0, leadingWildcards = 0, inValues = 0;
+        Set<List<Hop>> joins = new HashSet<>();
+        Set<Object> distinctJoins = new HashSet<>();
+
+        Deque<Group> stack = new ArrayDeque<>();
+        stack.push(new Group(expressions, 0));
+
+        while (!stack.isEmpty()) {
+            Group group = stack.pop();
+            depth = Math.max(depth, group.depth());
+
+            for (Expression expression : group.expressions()) {
+                String field;
+                if (expression instanceof SingularExpression se) {
+                    field = se.field;
+                    if (isLeadingWildcard(se.operator, se.value)) {
+                        leadingWildcards++;
+                    }
+                } else if (expression instanceof ListExpression le) {
+                    field = le.field;
+                    inValues += le.values.size();
+                } else {
+                    List<Expression> children = expression instanceof AndExpression and ? and.expressions :
+                            ((OrExpression) expression).expressions;
+                    if (!children.isEmpty()) {
+                        stack.push(new Group(children, group.depth() + 1));
+                    }
+                    continue;
+                }
+
+                terms++;
+                FieldPath path = FieldPath.of(type, field);
+                List<Hop> hops = Arrays.asList(path.hops);
+                for (int i = 1; i <= hops.size(); i++) {
+                    joins.add(hops.subList(0, i));
+                }
+                if (path.pluralHop >= 0) {
+                    if (mode != CollectionFilterMode.EXISTS) {
+                        distinctJoins.add(hops.subList(0, path.pluralHop + 1));
+                    }
+                } else if (path.distinct) {     // the collection itself, e.g. {"tasks": null}
+                    distinctJoins.add(field);
+                }
+            }
+        }
+        return new ExpressionsCost(depth, terms, joins.size(), distinctJoins.size(), leadingWildcards, inValues);
+    }
+
+    private static boolean isLeadingWildcard(Operator operator, Object value) {
+        switch (operator) {
+            case $end:
+            case $iend:
+            case $contains:
+            case $icontains:
+                return true;
+            case $start:
+            case $istart:
+                // the wildcards of the values are not escaped
+                String text = String.valueOf(value);
+                return text.startsWith("%") || text.startsWith("_");
+            default:
+                return false;
+        }
+    }
+
+    private record Group(List<Expression> expressions, int depth) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.ExpressionsBudgetExceededException.Violation;
+import jakarta.persistence.metamodel.ManagedType;
+
+import java.util.List;
+
+/**
+ * Checks the {@link ExpressionsCost} of the expressions against the {@link ExpressionsBudget} of the entity,
+ * before the query is built.
+ */
+final class ExpressionsCostGuard {
+
+    private ExpressionsCostGuard() {
+    }
+
+    /**
+     * @param mode the collection filter mode the query would be built with.
+     * @return the collection filter mode to build the query with, {@link CollectionFilterMode#EXISTS}
+     * if the query is downgraded.
+     * @throws ExpressionsBudgetExceededException if the query is over budget, and can't be downgraded.
+     */
+    static CollectionFilterMode check(ManagedType<?> type, List<Expression> expressions, CollectionFilterMode mode) {
+        ExpressionsBudget budget = ExpressionsConfig.getInstance().getBudget(type.getJavaType());
+        if (budget == null) {
+            return mode;
+        }
+
+        ExpressionsCost cost = ExpressionsCost.of(type, expressions, mode);
+        List<Violation> violations = budget.violations(cost);
+        if (violations.isEmpty()) {
+            return mode;
+        }
+
+        if (budget.isDowngrade() && mode != CollectionFilterMode.EXISTS && cost.distinctJoins() > 0) {
+            ExpressionsCost downgraded = ExpressionsCost.of(type, expressions, CollectionFilterMode.EXISTS);
+            if (budget.violations(downgraded).isEmpty()) {
+                return CollectionFilterMode.EXISTS;
+            }
+        }
+        throw new ExpressionsBudgetExceededException(type.getJavaType(), cost, violations);
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.mhewedy.expressions;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.github.mhewedy.expressions.Expression.AndExpression;
+import com.github.mhewedy.expressions.Expression.ListExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+import com.github.mhewedy.expressions.Expression.SingularExpression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.mhewedy.expressions.Operator.$and;
+import static com.github.mhewedy.expressions.Operator.$or;
+
+/**
+ * Reads the json token stream directly into the {@link Expression} tree, without creating the intermediate maps
+ * created by the default deserialization of {@link Expressions}, which are walked again to build the query.
+ * <p>
+ * The operators are validated while reading, and the same as the default deserialization,
+ * all fields of the objects inside {@code $and} and {@code $or}, and all operators of the same field,
+ * are "and"ed, example:
+ * <pre>
+ * {"$or": [{"firstName": "ali", "age": {"$gt": 10, "$lt": 20}}, {"lastName": "ibrahim"}]}
+ * </pre>
+ * is read as {@code (firstName = 'ali' and age > 10 and age < 20) or lastName = 'ibrahim'},
+ * while a duplicate field (or operator) replaces the previous one, as it does in a map.
+ *
+ * @see ExpressionsModule
+ */
+public class ExpressionsDeserializer extends StdDeserializer<Expressions> {
+
+    public ExpressionsDeserializer() {
+        super(Expressions.class);
+    }
+
+    @Override
+    public Expressions deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (!p.isExpectedStartObjectToken()) {
+            return (Expressions) ctxt.handleUnexpectedToken(Expressions.class, p);
+        }
+        return Expressions.of(readObject(p, ctxt, 0));
+    }
+
+    /**
+     * Reads the fields of the current object, the fields are implicitly "and"ed.
+     *
+     * @param depth the number of the {@code $and} and {@code $or} groups enclosing the object.
+     */
+    private List<Expression> readObject(JsonParser p, DeserializationContext ctxt, int depth) throws IOException {
+        Map<String, List<Expression>> fields = new LinkedHashMap<>();
+
+        for (String field = p.nextFieldName(); field != null; field = p.nextFieldName()) {
+            JsonToken token = p.nextToken();
+            List<Expression> expressions = new ArrayList<>(1);
+            fields.put(field, expressions);     // replaces the duplicate field
+
+            if ($or.name().equalsIgnoreCase(field)) {
+                OrExpression orExpression = new OrExpression();
+                readGroup(p, ctxt, field, token, orExpression.expressions, depth + 1);
+                expressions.add(orExpression);
+            } else if ($and.name().equalsIgnoreCase(field)) {
+                AndExpression andExpression = new AndExpression();
+                readGroup(p, ctxt, field, token, andExpression.expressions, depth + 1);
+                expressions.add(andExpression);
+            } else if (token == JsonToken.START_OBJECT) {   // value in the form of {"$operator": "value"}
+                readOperators(p, ctxt, field, expressions);
+            } else {    // operator is "$eq"
+                expressions.add(new SingularExpression(field, Operator.$eq, readValue(p, ctxt, token)));
+            }
+        }
+        if (fields.size() == 1) {
+            return fields.values().iterator().next();
+        }
+        List<Expression> expressions = new ArrayList<>(fields.size());
+        fields.values().forEach(expressions::addAll);
+        return expressions;
+    }
+
+    private void readGroup(JsonParser p, DeserializationContext ctxt, String field, JsonToken token,
+                           List<Expression> group, int depth) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            ctxt.reportInputMismatch(this, "%s accepts list of expressions", field);
+        }
+        // checked while reading, as the reading itself is recursive
+        int maximumDepth = ExpressionsConfig.getInstance().getMaximumDepth();
+        if (depth > maximumDepth) {
+            ctxt.reportInputMismatch(this, "expressions exceed the maximum depth of %d", maximumDepth);
+        }
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                ctxt.reportInputMismatch(this, "%s accepts list of expressions", field);
+            }
+            List<Expression> expressions = readObject(p, ctxt, depth);
+            if (expressions.size() == 1) {
+                group.add(expressions.get(0));
+            } else {
+                AndExpression andExpression = new AndExpression();
+                andExpression.expressions.addAll(expressions);
+                group.add(andExpression);
+            }
+        }
+    }
+
+    private void readOperators(JsonParser p, DeserializationContext ctxt, String field,
+                               List<Expression> expressions) throws IOException {
+        String name = p.nextFieldName();
+        if (name == null) {
+            ctxt.reportInputMismatch(this, "operator is missing for field: %s", field);
+        }
+        Map<Operator, Expression> operators = new LinkedHashMap<>();
+        for (; name != null; name = p.nextFieldName()) {
+            Operator operator = operatorOf(ctxt, name);
+            JsonToken token = p.nextToken();
+
+            if (operator.isList) {
+                if (token != JsonToken.START_ARRAY) {
+                    ctxt.reportInputMismatch(this, "operator %s accepts list of values: (field=%s)", operator, field);
+                }
+                operators.put(operator, new ListExpression(field, operator, readList(p, ctxt)));
+            } else {
+                operators.put(operator, new SingularExpression(field, operator, readValue(p, ctxt, token)));
+            }
+        }
+        expressions.addAll(operators.values());
+    }
+
+    private Operator operatorOf(DeserializationContext ctxt, String name) throws IOException {
+        try {
+            return Operator.valueOf(name);
+        } catch (IllegalArgumentException ex) {
+            return (Operator) ctxt.handleWeirdStringValue(Operator.class, name, "not one of the supported operators");
+        }
+    }
+
+    private List<Object> readList(JsonParser p, DeserializationContext ctxt) throws IOException {
+        List<Object> values = new ArrayList<>();
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            values.add(readValue(p, ctxt, token));
+        }
+        return values;
+    }
+
+    /**
+     * Reads the values into the same types created by the default deserialization.
+     */
+    private Object readValue(JsonParser p, DeserializationContext ctxt, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return p.getText();
+            case VALUE_NUMBER_INT:
+                return ctxt.hasSomeOfFeatures(F_MASK_INT_COERCIONS) ? _coerceIntegral(p, ctxt) : p.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return ctxt.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS) ?
+                        p.getDecimalValue() : p.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            case START_ARRAY:
+                return readList(p, ctxt);
+            default:
+                return ctxt.readValue(p, Object.class);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.mhewedy.expressions;
+
+import jakarta.persistence.AttributeNode;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Subgraph;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The associations to fetch along with the entities returned by
+ * {@link ExpressionsRepository#findAll(Expressions, org.springframework.data.domain.Pageable, ExpressionsFetch)},
+ * to avoid the N+1 selects when accessing them, example:
+ * <pre>
+ * Page&lt;Employee&gt; page = employeeRepository.findAll(expressions, pageable,
+ *         ExpressionsFetch.paths("department.city", "tasks"));
+ * </pre>
+ * When a fetched association is also joined to filter on it (with the same join type),
+ * the filter join is fetched instead of joining the association twice, other associations are left joined.
+ * <p>
+ * Entity graphs are converted into the paths of their attribute nodes, so they are fetched the same way.
+ */
+public final class ExpressionsFetch {
+
+    private final List<String> paths;
+    private final String graphName;
+    private final EntityGraph<?> graph;
+
+    private ExpressionsFetch(List<String> paths, String graphName, EntityGraph<?> graph) {
+        this.paths = paths;
+        this.graphName = graphName;
+        this.graph = graph;
+    }
+
+    /**
+     * @param paths dot separated paths of associations, e.g. {@code department.city} fetches both
+     *              the department and its city.
+     */
+    public static ExpressionsFetch paths(String... paths) {
+        Assert.noNullElements(paths, "paths must not contain null elements!");
+        return new ExpressionsFetch(List.of(paths), null, null);
+    }
+
+    /**
+     * @param name the name of an entity graph defined using {@link jakarta.persistence.NamedEntityGraph}.
+     */
+    public static ExpressionsFetch graph(String name) {
+        Assert.hasText(name, "name must not be empty!");
+        return new ExpressionsFetch(null, name, null);
+    }
+
+    public static ExpressionsFetch graph(EntityGraph<?> graph) {
+        Assert.notNull(graph, "graph must not be null!");
+        return new ExpressionsFetch(null, null, graph);
+    }
+
+    List<String> getPaths(EntityManager entityManager) {
+        if (paths != null) {
+            return paths;
+        }
+        List<String> list = new ArrayList<>();
+        addPaths("", (graph != null ? graph : entityManager.getEntityGraph(graphName)).getAttributeNodes(), list);
+        return list;
+    }
+
+    private static void addPaths(String prefix, List<? extends AttributeNode<?>> nodes, List<String> list) {
+        for (AttributeNode<?> node : nodes) {
+            String path = prefix + node.getAttributeName();
+            list.add(path);
+            for (Object subgraph : node.getSubgraphs().values()) {    // raw map in the jpa api
+                addPaths(path + ".", ((Subgraph<?>) subgraph).getAttributeNodes(), list);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ExpressionsFetch(" + (paths != null ? paths : graphName != null ? graphName : graph) + ")";
+    }
+}
@@ -0,0 +1,233 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.Expression.AndExpression;
+import com.github.mhewedy.expressions.Expression.ListExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+import com.github.mhewedy.expressions.Expression.SingularExpression;
+import org.springframework.util.Assert;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.Temporal;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A stable identity of the expressions, made of two 64-bit hashes computed on the canonical form of the expressions:
+ * <ul>
+ *     <li>{@link #shapeHash()}: of the fields and operators, regardless of the values,
+ *     useful to group the metrics or the logs of the same filter.</li>
+ *     <li>{@link #fullHash()}: of the fields, operators and values, useful as a cache key for the results.</li>
+ * </ul>
+ * The canonical form doesn't depend on the order of the fields or the order of the {@code $and} and {@code $or} elements,
+ * nested groups of the same kind are flattened (e.g. {@code a and (b and c)} is {@code a and b and c}),
+ * single element groups are unwrapped, the implicit {@code $eq} is the same as the explicit one,
+ * and the values are normalized (e.g. {@code 10}, {@code 10L} and {@code 10.0} are the same value,
+ * and an enum is the same as its name), example:
+ * <pre>
+ * ExpressionsFingerprint fingerprint = ExpressionsFingerprint.of(expressions);
+ * Page&lt;Employee&gt; page = cache.get(fingerprint.fullHash(), it -> employeeRepository.findAll(expressions, pageable));
+ * </pre>
+ * As any hash, different expressions could produce the same hash, though it is very unlikely.
+ */
+public record ExpressionsFingerprint(long shapeHash, long fullHash) {
+
+    private static final long AND_SEED = 0x9e3779b97f4a7c15L;
+    private static final long OR_SEED = 0xc2b2ae3d27d4eb4fL;
+    private static final long LIST_SEED = 0x165667b19e3779f9L;
+    private static final long NULL_HASH = 0x27d4eb2f165667c5L;
+
+    public static ExpressionsFingerprint of(Expressions expressions) {
+        Assert.notNull(expressions, "expressions must not be null!");
+        return of(expressions.getExpressions());
+    }
+
+    static ExpressionsFingerprint of(List<Expression> expressions) {
+        Group root = new Group(false, expressions);
+        Deque<Group> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            Group group = stack.peek();
+            Iterator<Expression> members = group.members.peek();
+            if (members == null) {
+                stack.pop();
+                group.complete();
+                if (!stack.isEmpty()) {
+                    stack.peek().add(group.shape, group.full);
+                }
+            } else if (!members.hasNext()) {
+                group.members.pop();
+            } else {
+                Expression expression = members.next();
+                if (expression instanceof SingularExpression se) {
+                    long leaf = leaf(se.field, se.operator);
+                    group.add(leaf, mix(leaf ^ value(se.value)));
+                } else if (expression instanceof ListExpression le) {
+                    long leaf = leaf(le.field, le.operator);
+                    group.add(leaf, mix(leaf ^ mix(values(le.values))));
+                } else if (expression instanceof OrExpression oe) {
+                    group.nest(true, oe.expressions, stack);
+                } else {
+                    group.nest(false, ((AndExpression) expression).expressions, stack);
+                }
+            }
+        }
+        return new ExpressionsFingerprint(root.shape, root.full);
+    }
+
+    /**
+     * @return the shape hash as a 16 characters hex string.
+     */
+    public String shapeHex() {
+        return String.format("%016x", shapeHash);
+    }
+
+    /**
+     * A group being hashed, the tree is walked using an explicit stack of groups, so deep expressions
+     * can't overflow the call stack.
+     * <p>
+     * The hashes of the members are summed, as the sum doesn't depend on the order,
+     * the members of the nested groups of the same kind are members of this group.
+     */
+    private static class Group {
+        private final boolean or;
+        private final Deque<Iterator<Expression>> members = new ArrayDeque<>();
+
+        private long shapeSum;
+        private long fullSum;
+        private int count;
+
+        // the hashes of the group, once completed
+        private long shape;
+        private long full;
+
+        private Group(boolean or, List<Expression> expressions) {
+            this.or = or;
+            members.push(expressions.iterator());
+        }
+
+        private void add(long shape, long full) {
+            shapeSum += shape;
+            fullSum += full;
+            count++;
+        }
+
+        private void nest(boolean or, List<Expression> expressions, Deque<Group> stack) {
+            if (or == this.or) {
+                members.push(expressions.iterator());
+            } else {
+                stack.push(new Group(or, expressions));
+            }
+        }
+
+        private void complete() {
+            if (count == 1) {   // the group is unwrapped and the hashes of its single member are kept
+                shape = shapeSum;
+                full = fullSum;
+            } else {
+                long seed = or ? OR_SEED : AND_SEED;
+                shape = mix(seed ^ mix(shapeSum + count));
+                full = mix(seed ^ mix(fullSum + count));
+            }
+        }
+    }
+
+    private static long values(List<Object> values) {
+        long hash = LIST_SEED;
+        if (values instanceof PrimitiveList primitives) {
+            for (int i = 0; i < primitives.size(); i++) {
+                hash += number(primitives.getLong(i));     // same as the boxed values, without boxing
+            }
+        } else {
+            for (Object value : values) {
+                hash += value(value);   // the order of the values doesn't matter
+            }
+        }
+        return hash;
+    }
+
+    private static long leaf(String field, Operator operator) {
+        return mix(hash(field) * 31 + operator.ordinal() + 1);
+    }
+
+    private static long value(Object value) {
+        if (value == null) {
+            return NULL_HASH;
+        }
+        if (value instanceof String s) {
+            return hash(s);
+        }
+        if (value instanceof Boolean b) {
+            return b ? 0x51afd7ed558ccd1L : 0x4cf5ad432745937fL;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return number(((Number) value).longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return decimal(((Number) value).doubleValue());
+        }
+        if (value instanceof BigDecimal bd) {
+            try {
+                return number(bd.longValueExact());
+            } catch (ArithmeticException ex) {
+                return decimal(bd.doubleValue());
+            }
+        }
+        if (value instanceof BigInteger bi) {
+            return bi.bitLength() < 64 ? number(bi.longValue()) : decimal(bi.doubleValue());
+        }
+        if (value instanceof Enum<?> e) {
+            return hash(e.name());
+        }
+        if (value instanceof Temporal t) {
+            return hash(DateTimeUtil.format(t));
+        }
+        if (value instanceof UUID uuid) {
+            return hash(uuid.toString());
+        }
+        if (value instanceof List<?> list) {
+            long h = LIST_SEED;
+            for (Object element : list) {
+                h = mix(h * 31 + value(element));
+            }
+            return h;
+        }
+        return mix(value.hashCode());
+    }
+
+    private static long number(long value) {
+        return mix(value ^ 0x3c6ef372fe94f82bL);
+    }
+
+    private static long decimal(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 0x1p63) {
+            return number((long) value);
+        }
+        return mix(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * 64-bit FNV-1a of the string chars.
+     */
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * The finalizer of the SplitMix64 generator.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.Expression.AndExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Enforces the {@link ExpressionsConfig#getMaximumDepth() maximum depth} and the
+ * {@link ExpressionsConfig#getMaximumTerms() maximum terms} of the expressions before they are optimized or
+ * converted into a query, using an explicit stack, so the check itself is safe for any input.
+ */
+final class ExpressionsLimits {
+
+    private ExpressionsLimits() {
+    }
+
+    /**
+     * @param expressions the top level expressions, the top level group is not counted in the depth.
+     * @throws IllegalArgumentException if any of the limits is exceeded.
+     */
+    static void check(List<Expression> expressions) {
+        ExpressionsConfig config = ExpressionsConfig.getInstance();
+        int maximumDepth = config.getMaximumDepth();
+        int maximumTerms = config.getMaximumTerms();
+
+        Deque<Group> stack = new ArrayDeque<>();
+        stack.push(new Group(expressions, 0));
+        int terms = 0;
+
+        while (!stack.isEmpty()) {
+            Group group = stack.pop();
+            for (Expression expression : group.expressions) {
+                List<Expression> children = expression instanceof AndExpression and ? and.expressions :
+                        expression instanceof OrExpression or ? or.expressions : null;
+                if (children == null) {
+                    if (++terms > maximumTerms) {
+                        throw new IllegalArgumentException(
+                                String.format("expressions exceed the maximum terms of %d", maximumTerms));
+                    }
+                } else if (!children.isEmpty()) {
+                    if (group.depth + 1 > maximumDepth) {
+                        throw new IllegalArgumentException(
+                                String.format("expressions exceed the maximum depth of %d", maximumDepth));
+                    }
+                    stack.push(new Group(children, group.depth + 1));
+                }
+            }
+        }
+    }
+
+    private record Group(List<Expression> expressions, int depth) {
+    }
+}
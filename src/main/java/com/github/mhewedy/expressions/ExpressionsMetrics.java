@@ -0,0 +1,288 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.Expression.AndExpression;
+import com.github.mhewedy.expressions.Expression.ListExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.criteria.From;
+import org.springframework.data.domain.Slice;
+import org.springframework.util.Assert;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Micrometer instrumentation of the {@link ExpressionsRepository}, it is only active when
+ * Micrometer is on the classpath and a registry is bound.
+ * <p>
+ * In a Spring Boot application, declaring the instance as a bean binds it to the application meter registry:
+ * <pre>
+ * &#64;Bean
+ * public ExpressionsMetrics expressionsMetrics(ObservationRegistry observationRegistry) {
+ *     ExpressionsMetrics metrics = ExpressionsMetrics.getInstance();
+ *     metrics.setObservationRegistry(observationRegistry);    // optional, to correlate the queries with traces
+ *     return metrics;
+ * }
+ * </pre>
+ * The following meters are recorded, tagged by the {@code entity} and the {@code shape} fingerprint
+ * (a hash of the fields and operators used, regardless of the values), as the shapes come from the user input,
+ * only the first {@link #setMaximumShapes(int) maximum shapes} are tagged as is, the others are tagged as {@code other}:
+ * <ul>
+ *     <li>{@code expressions.predicate}: the time spent building the criteria predicate.</li>
+ *     <li>{@code expressions.query}: the time spent executing the repository method,
+ *     tagged by the {@code operation} as well (e.g. {@code findAll}, {@code page} and {@code count}),
+ *     and the {@code exception} thrown if any. The {@code stream} operation is timed until the stream is closed,
+ *     so it includes consuming the stream.</li>
+ *     <li>{@code expressions.result.size}: the number of the returned elements, tagged by the {@code operation}.</li>
+ *     <li>{@code expressions.tree.depth}: the nesting depth of the expressions.</li>
+ *     <li>{@code expressions.in.size}: the number of values of each {@code $in} and {@code $nin}.</li>
+ *     <li>{@code expressions.joins}: the number of joins created for the query.</li>
+ * </ul>
+ * The observations have the exact shape as a high cardinality key value.
+ */
+public final class ExpressionsMetrics implements MeterBinder {
+
+    private static final ExpressionsMetrics INSTANCE = new ExpressionsMetrics();
+    private static final String OTHER_SHAPE = "other";
+    private static final String NO_EXCEPTION = "none";
+
+    private volatile MeterRegistry meterRegistry;
+    private volatile ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+    private volatile int maximumShapes = 100;
+    private final Set<String> shapes = ConcurrentHashMap.newKeySet();
+
+    private ExpressionsMetrics() {
+    }
+
+    public static ExpressionsMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Assert.notNull(meterRegistry, "meterRegistry must not be null!");
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Sets the registry used to create an {@code expressions.query} observation around each repository method.
+     */
+    public void setObservationRegistry(ObservationRegistry observationRegistry) {
+        Assert.notNull(observationRegistry, "observationRegistry must not be null!");
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * The maximum number of distinct shapes used to tag the meters, defaults to {@code 100},
+     * so the filters of the clients can't create unlimited meters.
+     */
+    public void setMaximumShapes(int maximumShapes) {
+        Assert.isTrue(maximumShapes >= 0, "maximumShapes must not be negative!");
+        this.maximumShapes = maximumShapes;
+    }
+
+    void reset() {
+        this.meterRegistry = null;
+        this.observationRegistry = ObservationRegistry.NOOP;
+        this.maximumShapes = 100;
+        this.shapes.clear();
+    }
+
+    boolean isEnabled() {
+        return meterRegistry != null || !observationRegistry.isNoop();
+    }
+
+    <R> R observeQuery(Class<?> entity, String operation, String shape, Supplier<R> query) {
+        MeterRegistry registry = meterRegistry;
+        long start = System.nanoTime();
+        R result = null;
+        Throwable error = null;
+        try {
+            result = Observation.createNotStarted("expressions.query", observationRegistry)
+                    .lowCardinalityKeyValue("entity", entity.getSimpleName())
+                    .lowCardinalityKeyValue("operation", operation)
+                    .highCardinalityKeyValue("shape", shape)
+                    .observe(query);
+            return result;
+        } catch (RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            if (registry != null) {
+                Tags tags = Tags.of("entity", entity.getSimpleName(), "operation", operation, "shape", tagOf(shape));
+                record(registry, "expressions.query", tags, start, error);
+
+                int size = error == null ? resultSize(result) : -1;
+                if (size >= 0) {
+                    DistributionSummary.builder("expressions.result.size")
+                            .tags(tags)
+                            .register(registry)
+                            .record(size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #observeQuery(Class, String, String, Supplier)}, but observes the stream until it's closed.
+     */
+    <T> Stream<T> observeStream(Class<?> entity, String shape, Supplier<Stream<T>> query) {
+        MeterRegistry registry = meterRegistry;
+        Tags tags = Tags.of("entity", entity.getSimpleName(), "operation", "stream", "shape", tagOf(shape));
+        long start = System.nanoTime();
+        Observation observation = Observation.createNotStarted("expressions.query", observationRegistry)
+                .lowCardinalityKeyValue("entity", entity.getSimpleName())
+                .lowCardinalityKeyValue("operation", "stream")
+                .highCardinalityKeyValue("shape", shape)
+                .start();
+
+        Stream<T> stream;
+        try (Observation.Scope ignored = observation.openScope()) {
+            stream = query.get();
+        } catch (RuntimeException | Error e) {
+            observation.error(e);
+            observation.stop();
+            if (registry != null) {
+                record(registry, "expressions.query", tags, start, e);
+            }
+            throw e;
+        }
+        return stream.onClose(() -> {
+            observation.stop();
+            if (registry != null) {
+                record(registry, "expressions.query", tags, start, null);
+            }
+        });
+    }
+
+    <R> R observePredicate(From<?, ?> root, List<Expression> expressions, String shape, JoinRegistry joins,
+                           Supplier<R> builder) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return builder.get();
+        }
+
+        Tags tags = Tags.of("entity", root.getJavaType().getSimpleName(), "shape", tagOf(shape));
+        long start = System.nanoTime();
+        R predicate;
+        try {
+            predicate = builder.get();
+        } catch (RuntimeException | Error e) {
+            record(registry, "expressions.predicate", tags, start, e);
+            throw e;
+        }
+        record(registry, "expressions.predicate", tags, start, null);
+
+        DistributionSummary.builder("expressions.tree.depth")
+                .tags(tags)
+                .register(registry)
+                .record(depthOf(expressions));
+        DistributionSummary.builder("expressions.joins")
+                .tags(tags)
+                .register(registry)
+                .record(joins.getCreatedCount());
+
+        DistributionSummary inSize = DistributionSummary.builder("expressions.in.size")
+                .tags(tags)
+                .register(registry);
+        recordInSizes(expressions, inSize);
+
+        return predicate;
+    }
+
+    private static void record(MeterRegistry registry, String name, Tags tags, long start, Throwable error) {
+        Timer.builder(name)
+                .tags(tags)
+                .tag("exception", exceptionOf(error))
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the shape if among the first {@link #maximumShapes} distinct shapes, otherwise {@code other}.
+     */
+    private String tagOf(String shape) {
+        if (shapes.contains(shape)) {
+            return shape;
+        }
+        if (shapes.size() < maximumShapes && shapes.add(shape)) {
+            return shape;   // might slightly exceed the maximum under contention, which is fine for a bound
+        }
+        return shapes.contains(shape) ? shape : OTHER_SHAPE;
+    }
+
+    private static String exceptionOf(Throwable error) {
+        return error == null ? NO_EXCEPTION : error.getClass().getSimpleName();
+    }
+
+    private static int resultSize(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof KeysetWindow<?> window) {
+            return window.getContent().size();
+        }
+        return -1;  // counts and streams
+    }
+
+    /**
+     * The top level group is counted in the depth, the tree is walked using an explicit stack.
+     */
+    private static int depthOf(List<Expression> expressions) {
+        int depth = 0;
+        Deque<Group> stack = new ArrayDeque<>();
+        stack.push(new Group(expressions, 1));
+        while (!stack.isEmpty()) {
+            Group group = stack.pop();
+            depth = Math.max(depth, group.depth());
+            for (Expression expression : group.expressions()) {
+                List<Expression> children = childrenOf(expression);
+                if (children != null) {
+                    stack.push(new Group(children, group.depth() + 1));
+                }
+            }
+        }
+        return depth;
+    }
+
+    private static void recordInSizes(List<Expression> expressions, DistributionSummary summary) {
+        Deque<List<Expression>> stack = new ArrayDeque<>();
+        stack.push(expressions);
+        while (!stack.isEmpty()) {
+            for (Expression expression : stack.pop()) {
+                if (expression instanceof ListExpression list) {
+                    summary.record(list.values.size());
+                } else {
+                    List<Expression> children = childrenOf(expression);
+                    if (children != null) {
+                        stack.push(children);
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Expression> childrenOf(Expression expression) {
+        return expression instanceof AndExpression and ? and.expressions :
+                expression instanceof OrExpression or ? or.expressions : null;
+    }
+
+    private record Group(List<Expression> expressions, int depth) {
+    }
+}
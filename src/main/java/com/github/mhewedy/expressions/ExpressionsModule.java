@@ -0,0 +1,19 @@
+package com.github.mhewedy.expressions;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Jackson module that registers the {@link ExpressionsDeserializer} and the {@link ExpressionsSerializer}, example:
+ * <pre>
+ * ObjectMapper objectMapper = new ObjectMapper().registerModule(new ExpressionsModule());
+ * </pre>
+ * In a Spring Boot application, declaring the module as a bean registers it to the application {@code ObjectMapper}.
+ */
+public class ExpressionsModule extends SimpleModule {
+
+    public ExpressionsModule() {
+        super(ExpressionsModule.class.getSimpleName());
+        addDeserializer(Expressions.class, new ExpressionsDeserializer());
+        addSerializer(Expressions.class, new ExpressionsSerializer());
+    }
+}
@@ -0,0 +1,427 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.Expression.AndExpression;
+import com.github.mhewedy.expressions.Expression.ListExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+import com.github.mhewedy.expressions.Expression.SingularExpression;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Rewrites the expressions into an equivalent but simpler form before being converted into a query:
+ * <ul>
+ *     <li>nested {@code $and} in {@code $and} and {@code $or} in {@code $or} are flattened,
+ *     and single element groups are unwrapped.</li>
+ *     <li>duplicate terms in the same group are removed.</li>
+ *     <li>{@code $eq} and {@code $in} terms on the same field in an {@code $or} group are merged into a single {@code $in}.</li>
+ *     <li>{@code $gt}, {@code $gte}, {@code $lt} and {@code $lte} terms on the same field in an {@code $and} group
+ *     are reduced to the tightest lower and upper bounds.</li>
+ *     <li>contradictions such as {@code age = 10 and age = 20} or {@code age > 30 and age < 20} are detected,
+ *     so the whole query could be answered without hitting the database.</li>
+ * </ul>
+ * Ranges and contradictions are only evaluated for numeric, boolean and null values, strings are never compared,
+ * as their order and equality depend on the database collation.
+ * <p>
+ * The groups are visited using an explicit stack instead of recursion, so deeply nested expressions
+ * can't overflow the thread stack.
+ */
+final class ExpressionsOptimizer {
+
+    /**
+     * Marks a group that never matches, it never escapes the optimizer.
+     */
+    private static final Expression FALSE = new OrExpression();
+
+    private ExpressionsOptimizer() {
+    }
+
+    /**
+     * @param expressions the top level expressions, which are implicitly "and"ed.
+     */
+    static Result optimize(List<Expression> expressions) {
+        Expression optimized = optimizeGroups(expressions);
+        if (optimized == FALSE) {
+            return new Result(Collections.emptyList(), true);
+        }
+        return new Result(optimized instanceof AndExpression and ? and.expressions : singletonList(optimized), false);
+    }
+
+    /**
+     * @param expressions    the optimized expressions.
+     * @param unsatisfiable  true if the expressions can never match any row.
+     */
+    record Result(List<Expression> expressions, boolean unsatisfiable) {
+    }
+
+    private static Expression optimizeGroups(List<Expression> expressions) {
+        Deque<Group> stack = new ArrayDeque<>();
+        Group top = new Group(expressions, false);
+        stack.push(top);
+
+        while (true) {
+            Group group = stack.peek();
+            if (group.index < group.children.size()) {
+                Expression expression = group.children.get(group.index++);
+                if (expression instanceof AndExpression and) {
+                    stack.push(new Group(and.expressions, false));
+                } else if (expression instanceof OrExpression or) {
+                    stack.push(new Group(or.expressions, true));
+                } else {
+                    group.add(expression);
+                }
+                continue;
+            }
+
+            stack.pop();
+            Expression optimized = group.or ? optimizeOr(group) : optimizeAnd(group);
+            if (group == top) {
+                return optimized;
+            }
+            stack.peek().add(optimized);
+        }
+    }
+
+    private static Expression optimizeAnd(Group group) {
+        if (group.unsatisfiable) {
+            return FALSE;
+        }
+        List<Expression> merged = mergeBounds(distinct(group.flat));
+        if (merged == null) {
+            return FALSE;
+        }
+        if (merged.size() == 1) {
+            return merged.get(0);
+        }
+        AndExpression and = new AndExpression();
+        merged.forEach(and::add);
+        return and;
+    }
+
+    private static Expression optimizeOr(Group group) {
+        if (group.flat.isEmpty()) {
+            return FALSE;
+        }
+
+        List<Expression> merged = mergeEqualities(distinct(group.flat));
+        if (merged.size() == 1) {
+            return merged.get(0);
+        }
+        OrExpression or = new OrExpression();
+        merged.forEach(or::add);
+        return or;
+    }
+
+    private static List<Expression> distinct(List<Expression> expressions) {
+        Set<TermKey> seen = new HashSet<>();
+        List<Expression> list = new ArrayList<>(expressions.size());
+        for (Expression expression : expressions) {
+            TermKey key = TermKey.of(expression);
+            if (key == null || seen.add(key)) {
+                list.add(expression);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Merges the {@code $eq} and {@code $in} terms on the same field into a single {@code $in} term,
+     * only values of the same class are merged, as the values of a list are converted based on its first element.
+     */
+    private static List<Expression> mergeEqualities(List<Expression> expressions) {
+        Map<EqualityKey, List<Expression>> groups = new LinkedHashMap<>();
+        for (Expression expression : expressions) {
+            EqualityKey key = EqualityKey.of(expression);
+            if (key != null) {
+                groups.computeIfAbsent(key, it -> new ArrayList<>()).add(expression);
+            }
+        }
+
+        List<Expression> list = new ArrayList<>(expressions.size());
+        for (Expression expression : expressions) {
+            EqualityKey key = EqualityKey.of(expression);
+            List<Expression> group = key == null ? null : groups.remove(key);
+            if (key == null || (group != null && group.size() == 1)) {
+                list.add(expression);
+            } else if (group != null) {
+                Set<Object> values = new LinkedHashSet<>();
+                for (Expression term : group) {
+                    if (term instanceof SingularExpression singular) {
+                        values.add(singular.value);
+                    } else {
+                        values.addAll(((ListExpression) term).values);
+                    }
+                }
+                list.add(new ListExpression(key.field(), Operator.$in, new ArrayList<>(values)));
+            }
+            // else: already merged into the first term of its group
+        }
+        return list;
+    }
+
+    /**
+     * Reduces the numeric comparisons on the same field into the tightest bounds.
+     *
+     * @return the reduced expressions, or null if the comparisons contradict each other.
+     */
+    private static List<Expression> mergeBounds(List<Expression> expressions) {
+        Map<String, Bounds> boundsByField = new LinkedHashMap<>();
+        List<Object> list = new ArrayList<>(expressions.size());
+
+        for (Expression expression : expressions) {
+            if (!(expression instanceof SingularExpression singular) || !Bounds.accepts(singular)) {
+                list.add(expression);
+                continue;
+            }
+            Bounds bounds = boundsByField.get(singular.field);
+            if (bounds == null) {
+                bounds = new Bounds();
+                boundsByField.put(singular.field, bounds);
+                list.add(bounds);
+            }
+            if (!bounds.add(singular)) {
+                return null;
+            }
+        }
+
+        if (boundsByField.isEmpty()) {
+            return expressions;
+        }
+
+        List<Expression> result = new ArrayList<>(expressions.size());
+        for (Object item : list) {
+            if (item instanceof Bounds bounds) {
+                List<Expression> terms = bounds.terms();
+                if (terms == null) {
+                    return null;
+                }
+                result.addAll(terms);
+            } else {
+                result.add((Expression) item);
+            }
+        }
+        return result;
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (!(value instanceof Number)) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.toString());
+        } catch (NumberFormatException ex) {
+            return null;    // NaN and infinity
+        }
+    }
+
+    private static boolean sameValue(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        BigDecimal x = toDecimal(a), y = toDecimal(b);
+        if (x != null && y != null) {
+            return x.compareTo(y) == 0;
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * A group being visited, with its children optimized so far, nested groups of the same kind are flattened.
+     */
+    private static final class Group {
+        final List<Expression> children;
+        final boolean or;
+        final List<Expression> flat;
+        int index;
+        boolean unsatisfiable;
+
+        Group(List<Expression> children, boolean or) {
+            this.children = children;
+            this.or = or;
+            this.flat = new ArrayList<>(children.size());
+        }
+
+        void add(Expression optimized) {
+            if (optimized == FALSE) {
+                if (!or) {
+                    // the whole $and group never matches, skip the remaining children
+                    unsatisfiable = true;
+                    index = children.size();
+                }
+                return;
+            }
+            if (!or && optimized instanceof AndExpression and) {
+                flat.addAll(and.expressions);
+            } else if (or && optimized instanceof OrExpression orExpression) {
+                flat.addAll(orExpression.expressions);
+            } else {
+                flat.add(optimized);
+            }
+        }
+    }
+
+    /**
+     * The equality and the bounds of a single field inside an {@code $and} group.
+     */
+    private static class Bounds {
+        private SingularExpression equal;
+        private SingularExpression lower;
+        private SingularExpression upper;
+
+        static boolean accepts(SingularExpression expression) {
+            return switch (expression.operator) {
+                case $eq -> expression.value == null || expression.value instanceof Boolean ||
+                        toDecimal(expression.value) != null;
+                case $gt, $gte, $lt, $lte -> toDecimal(expression.value) != null;
+                default -> false;
+            };
+        }
+
+        /**
+         * @return false if the expression contradicts a previous equality.
+         */
+        boolean add(SingularExpression expression) {
+            switch (expression.operator) {
+                case $eq -> {
+                    if (equal != null) {
+                        return sameValue(equal.value, expression.value);
+                    }
+                    equal = expression;
+                }
+                case $gt, $gte -> {
+                    if (lower == null || tighter(expression, lower, 1)) {
+                        lower = expression;
+                    }
+                }
+                case $lt, $lte -> {
+                    if (upper == null || tighter(expression, upper, -1)) {
+                        upper = expression;
+                    }
+                }
+                default -> throw new IllegalStateException("Unexpected value: " + expression.operator);
+            }
+            return true;
+        }
+
+        /**
+         * @return the reduced terms, or null if the equality and the bounds contradict each other.
+         */
+        List<Expression> terms() {
+            if (equal != null && (lower != null || upper != null)) {
+                if (equal.value == null) {
+                    return null;    // null is never compared as greater or less than a value
+                }
+                BigDecimal value = toDecimal(equal.value);
+                if (value == null) {
+                    return keepAll();
+                }
+                if ((lower != null && !satisfies(value, lower)) || (upper != null && !satisfies(value, upper))) {
+                    return null;
+                }
+                return singletonList(equal);
+            }
+            if (lower != null && upper != null) {
+                int cmp = toDecimal(lower.value).compareTo(toDecimal(upper.value));
+                if (cmp > 0 || (cmp == 0 && (lower.operator == Operator.$gt || upper.operator == Operator.$lt))) {
+                    return null;
+                }
+            }
+            return keepAll();
+        }
+
+        private List<Expression> keepAll() {
+            List<Expression> list = new ArrayList<>(3);
+            if (equal != null) {
+                list.add(equal);
+            }
+            if (lower != null) {
+                list.add(lower);
+            }
+            if (upper != null) {
+                list.add(upper);
+            }
+            return list;
+        }
+
+        /**
+         * @param direction 1 for lower bounds (greater is tighter), -1 for upper bounds (less is tighter).
+         */
+        private static boolean tighter(SingularExpression candidate, SingularExpression current, int direction) {
+            int cmp = toDecimal(candidate.value).compareTo(toDecimal(current.value)) * direction;
+            return cmp > 0 || (cmp == 0 && isExclusive(candidate) && !isExclusive(current));
+        }
+
+        private static boolean satisfies(BigDecimal value, SingularExpression bound) {
+            int cmp = value.compareTo(toDecimal(bound.value));
+            return switch (bound.operator) {
+                case $gt -> cmp > 0;
+                case $gte -> cmp >= 0;
+                case $lt -> cmp < 0;
+                case $lte -> cmp <= 0;
+                default -> throw new IllegalStateException("Unexpected value: " + bound.operator);
+            };
+        }
+
+        private static boolean isExclusive(SingularExpression bound) {
+            return bound.operator == Operator.$gt || bound.operator == Operator.$lt;
+        }
+    }
+
+    private record TermKey(String field, Operator operator, Object value) {
+
+        static TermKey of(Expression expression) {
+            if (expression instanceof SingularExpression singular) {
+                return new TermKey(singular.field, singular.operator, singular.value);
+            }
+            if (expression instanceof ListExpression list) {
+                return new TermKey(list.field, list.operator, list.values);
+            }
+            return null;
+        }
+    }
+
+    private record EqualityKey(String field, Class<?> valueType) {
+
+        static EqualityKey of(Expression expression) {
+            if (expression instanceof SingularExpression singular) {
+                if (singular.operator != Operator.$eq || singular.value == null) {
+                    return null;
+                }
+                return new EqualityKey(singular.field, singular.value.getClass());
+            }
+            if (expression instanceof ListExpression list && list.operator == Operator.$in) {
+                if (list.values == null || list.values.isEmpty()) {
+                    return null;
+                }
+                if (list.values instanceof PrimitiveList primitives) {
+                    return new EqualityKey(list.field, primitives.getType());
+                }
+                Object first = list.values.get(0);
+                if (first == null) {
+                    return null;
+                }
+                for (Object value : list.values) {
+                    if (value == null || value.getClass() != first.getClass()) {
+                        return null;
+                    }
+                }
+                return new EqualityKey(list.field, first.getClass());
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.mhewedy.expressions;
+
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+
+import java.util.List;
+
+import static com.github.mhewedy.expressions.Expression.*;
+
+/**
+ * A compiled, value-free representation of a list of {@link Expression} for a given entity type.
+ * <p>
+ * All the metamodel lookups, field name parsing (see {@link FieldPath}) and operator validation are done once while compiling,
+ * so the plan can be cached (see {@link ExpressionsPlanCache}) and reused for every
+ * {@link Expressions} object that has the same shape (same fields and operators, regardless of the values).
+ * <p>
+ * Values are bound positionally at predicate building time, in the same order they are collected by
+ * {@link #shapeOf(List, List)}.
+ */
+final class ExpressionsPlan {
+
+    final Node[] nodes;
+    final int valueCount;
+
+    private ExpressionsPlan(Node[] nodes, int valueCount) {
+        this.nodes = nodes;
+        this.valueCount = valueCount;
+    }
+
+    /**
+     * Walks the expression list once to build the shape key (fields and operators only) and to collect
+     * the values in the order the compiled plan expects them.
+     */
+    static String shapeOf(List<Expression> expressions, List<Object> values) {
+        StringBuilder sb = new StringBuilder(expressions.size() * 16);
+        appendShape(expressions, sb, values);
+        return sb.toString();
+    }
+
+    private static void appendShape(List<Expression> expressions, StringBuilder sb, List<Object> values) {
+        for (Expression expression : expressions) {
+            if (expression instanceof SingularExpression se) {
+                // field names are length-prefixed, so user input can't forge other shapes
+                sb.append(se.field.length()).append(':').append(se.field).append(se.operator.name()).append(';');
+                values.add(se.value);
+            } else if (expression instanceof ListExpression le) {
+                sb.append(le.field.length()).append(':').append(le.field).append(le.operator.name()).append("[];");
+                values.add(le.values);
+            } else if (expression instanceof OrExpression oe) {
+                sb.append("$or(");
+                appendShape(oe.expressions, sb, values);
+                sb.append(')');
+            } else if (expression instanceof AndExpression ae) {
+                sb.append("$and(");
+                appendShape(ae.expressions, sb, values);
+                sb.append(')');
+            }
+        }
+    }
+
+    static ExpressionsPlan compile(ManagedType<?> type, List<Expression> expressions) {
+        int[] counter = {0};
+        Node[] nodes = compile(type, expressions, counter);
+        return new ExpressionsPlan(nodes, counter[0]);
+    }
+
+    private static Node[] compile(ManagedType<?> type, List<Expression> expressions, int[] counter) {
+        Node[] nodes = new Node[expressions.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            Expression expression = expressions.get(i);
+
+            if (expression instanceof SingularExpression se) {
+                nodes[i] = compileTerm(type, se.field, se.operator, false, counter[0]++, se);
+            } else if (expression instanceof ListExpression le) {
+                nodes[i] = compileTerm(type, le.field, le.operator, true, counter[0]++, le);
+            } else if (expression instanceof OrExpression oe) {
+                nodes[i] = new Junction(true, compile(type, oe.expressions, counter));
+            } else if (expression instanceof AndExpression ae) {
+                nodes[i] = new Junction(false, compile(type, ae.expressions, counter));
+            } else {
+                throw new IllegalStateException("Unexpected value: " + expression);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Compiles the path of a single field, e.g. to sort by.
+     */
+    static Term compilePath(ManagedType<?> type, String field) {
+        return compileTerm(type, field, Operator.$eq, false, -1, null);
+    }
+
+    private static Term compileTerm(ManagedType<?> type, String field, Operator operator,
+                                    boolean list, int valueIndex, Expression expression) {
+        FieldPath path = FieldPath.of(type, field);
+        return new Term(path.hops, path.pluralHop, path.attribute, path.embedded, operator, list, path.distinct,
+                comparisonOf(operator, path.javaType, expression), path.javaType, valueIndex,
+                path.caseInsensitive, path.normalized, path.converter);
+    }
+
+    private static Comparison comparisonOf(Operator operator, Class<?> javaType, Expression expression) {
+        switch (operator) {
+            case $gt:
+            case $gte:
+            case $lt:
+            case $lte:
+                if (Number.class.isAssignableFrom(javaType)) {
+                    return Comparison.NUMBER;
+                } else if (Comparable.class.isAssignableFrom(javaType)) {
+                    return Comparison.COMPARABLE;
+                }
+                throw new IllegalArgumentException("field should be Number or Comparable: " + expression);
+            default:
+                return Comparison.NONE;
+        }
+    }
+
+    enum Comparison {NONE, NUMBER, COMPARABLE}
+
+    abstract static class Node {
+    }
+
+    static final class Junction extends Node {
+        final boolean or;
+        final Node[] children;
+
+        Junction(boolean or, Node[] children) {
+            this.or = or;
+            this.children = children;
+        }
+    }
+
+    /**
+     * A single field expression, with its association hops from the root already resolved.
+     */
+    static final class Term extends Node {
+        final Hop[] hops;
+        final int pluralHop;    // index of the first collection hop, or -1
+        final Attribute<?, ?> attribute;
+        final Attribute<?, ?> embedded;
+        final Operator operator;
+        final boolean list;
+        final boolean distinct;
+        final Comparison comparison;
+        final Class<?> javaType;
+        final int valueIndex;
+        final boolean caseInsensitive;
+        final Attribute<?, ?> normalized;
+        final TypeConverter converter;
+
+        Term(Hop[] hops, int pluralHop, Attribute<?, ?> attribute, Attribute<?, ?> embedded, Operator operator,
+             boolean list, boolean distinct, Comparison comparison, Class<?> javaType, int valueIndex,
+             boolean caseInsensitive, Attribute<?, ?> normalized, TypeConverter converter) {
+            this.hops = hops;
+            this.pluralHop = pluralHop;
+            this.attribute = attribute;
+            this.embedded = embedded;
+            this.operator = operator;
+            this.list = list;
+            this.distinct = distinct;
+            this.comparison = comparison;
+            this.javaType = javaType;
+            this.valueIndex = valueIndex;
+            this.caseInsensitive = caseInsensitive;
+            this.normalized = normalized;
+            this.converter = converter;
+        }
+    }
+
+    record Hop(Attribute<?, ?> attribute, String name, JoinType joinType) {
+    }
+}
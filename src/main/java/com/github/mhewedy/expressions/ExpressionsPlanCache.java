@@ -0,0 +1,137 @@
+package com.github.mhewedy.expressions;
+
+import jakarta.persistence.metamodel.ManagedType;
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of the compiled query plans, keyed by the entity type and the shape of the expressions
+ * (the fields and operators used, regardless of the values).
+ * <p>
+ * Search endpoints usually receive a limited number of filter shapes with different values,
+ * so caching the compiled plan saves the metamodel lookups and the field name parsing on every request.
+ * <p>
+ * Example, to size the cache:
+ * <pre>
+ * ExpressionsPlanCache.getInstance().setMaximumSize(5_000);
+ * ...
+ * ExpressionsPlanCache.Statistics stats = ExpressionsPlanCache.getInstance().getStatistics();
+ * log.info("plan cache hit rate: {}, evictions: {}", stats.hitRate(), stats.evictionCount());
+ * </pre>
+ * Setting the maximum size to {@code 0} disables the cache.
+ * <p>
+ * The plans are kept in an access ordered map guarded by a lock, held only for the lookup and the insertion,
+ * so the least recently used plan is evicted in constant time by the insertion that exceeds the maximum size.
+ */
+public final class ExpressionsPlanCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private static final ExpressionsPlanCache INSTANCE = new ExpressionsPlanCache(DEFAULT_MAXIMUM_SIZE);
+
+    private final Map<PlanKey, ExpressionsPlan> plans = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PlanKey, ExpressionsPlan> eldest) {
+            if (size() > maximumSize) {
+                evictionCount.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private volatile int maximumSize;
+
+    ExpressionsPlanCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public static ExpressionsPlanCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached plan for the given type and shape, or compile and cache a new one.
+     * <p>
+     * The compilation happens outside the lock, so two threads may compile the same plan concurrently,
+     * in such case the last one wins, which is harmless as plans are immutable.
+     */
+    ExpressionsPlan get(ManagedType<?> type, String shape, Supplier<ExpressionsPlan> compiler) {
+        PlanKey key = new PlanKey(type, shape);
+        ExpressionsPlan cached;
+        synchronized (this) {
+            cached = plans.get(key);
+        }
+        if (cached != null) {
+            hitCount.increment();
+            return cached;
+        }
+        missCount.increment();
+
+        ExpressionsPlan plan = compiler.get();
+
+        if (maximumSize > 0) {
+            synchronized (this) {
+                plans.put(key, plan);
+            }
+        }
+        return plan;
+    }
+
+    public synchronized void setMaximumSize(int maximumSize) {
+        Assert.isTrue(maximumSize >= 0, "maximumSize must not be negative!");
+        this.maximumSize = maximumSize;
+        evict();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Removes all cached plans, field paths and value converters, and resets the statistics.
+     */
+    public synchronized void clear() {
+        plans.clear();
+        FieldPath.clear();
+        TypeConverter.clear();
+        hitCount.reset();
+        missCount.reset();
+        evictionCount.reset();
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hitCount.sum(), missCount.sum(), evictionCount.sum(), plans.size(), maximumSize);
+    }
+
+    /**
+     * Removes the least recently used plans until the cache fits the maximum size, the map iterates
+     * from the least to the most recently used plan.
+     */
+    private synchronized void evict() {
+        Iterator<PlanKey> iterator = plans.keySet().iterator();
+        while (plans.size() > maximumSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictionCount.increment();
+        }
+    }
+
+    public record Statistics(long hitCount, long missCount, long evictionCount, int size, int maximumSize) {
+
+        public double hitRate() {
+            long requestCount = hitCount + missCount;
+            return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+        }
+    }
+
+    private record PlanKey(ManagedType<?> type, String shape) {
+    }
+}
@@ -1,356 +1,552 @@
 package com.github.mhewedy.expressions;
 
 import jakarta.persistence.criteria.*;
-import jakarta.persistence.metamodel.Attribute;
-import jakarta.persistence.metamodel.ManagedType;
-import jakarta.persistence.metamodel.PluralAttribute;
 import jakarta.persistence.metamodel.SingularAttribute;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
-import java.time.*;
-import java.time.chrono.HijrahDate;
+import java.time.temporal.Temporal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.Map;
 
-import static com.github.mhewedy.expressions.Expression.*;
-import static jakarta.persistence.metamodel.Attribute.PersistentAttributeType;
+import static com.github.mhewedy.expressions.ExpressionsPlan.*;
 import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.toList;
 
 class ExpressionsPredicateBuilder {
 
-    static <T> Predicate getPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb, Expressions expressions) {
-        Assert.notNull(expressions, "expressions must not be null!");
+    /**
+     * The maximum number of predicates "and"ed or "or"ed together, before being split into nested groups.
+     */
+    static final int MAXIMUM_GROUP_SIZE = 100;
+
+    /**
+     * @param expressionList the top level expressions as returned by {@link Expressions#getExpressions()}.
+     * @param bindings       if not null, the values are not passed as literals, but rather as {@link ParameterExpression}
+     *                       and added to the bindings list, so the caller can bind them on the created query.
+     * @param joins          the joins of the query, to be reused by the predicate.
+     */
+    static <T> Predicate getPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb,
+                                      List<Expression> expressionList, List<ParameterBinding> bindings,
+                                      CollectionFilterMode collectionFilterMode, JoinRegistry joins) {
+        return getPredicate(root, query, cb, expressionList, bindings, bindings != null, collectionFilterMode, joins);
+    }
 
-        List<Predicate> predicates = getPredicates(query, cb,
-                root,
-                root.getModel(),
-                expressions.getExpressions());
+    /**
+     * @param bindings       if not null, the parameters created for the predicate are added to the bindings list,
+     *                       so the caller can bind them on the created query.
+     * @param bindValues     if true, the values are not passed as literals, but rather as {@link ParameterExpression},
+     *                       requires the bindings list.
+     */
+    static <T> Predicate getPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb,
+                                      List<Expression> expressionList, List<ParameterBinding> bindings,
+                                      boolean bindValues, CollectionFilterMode collectionFilterMode,
+                                      JoinRegistry joins) {
+        Assert.isTrue(!bindValues || bindings != null, "bindings must not be null to bind the values!");
+        Assert.notNull(expressionList, "expressions must not be null!");
+
+        List<Object> values = new ArrayList<>();
+        String shape = ExpressionsPlan.shapeOf(expressionList, values);
+
+        ExpressionsPlan plan = ExpressionsPlanCache.getInstance()
+                .get(root.getModel(), shape, () -> ExpressionsPlan.compile(root.getModel(), expressionList));
+
+        boolean exists = collectionFilterMode == CollectionFilterMode.EXISTS;
+        Context context = new Context(query, cb, values, bindings, bindValues, exists, joins);
+        List<Predicate> predicates = getPredicates(context, root, plan.nodes);
 
         if (predicates.isEmpty()) {
             return cb.isTrue(cb.literal(true));
         }
 
-        if (predicates.size() == 1) {
-            return predicates.iterator().next();
+        return combine(cb, predicates, true);
+    }
+
+    /**
+     * Walks the nodes using an explicit stack instead of recursion, so the depth of the expressions
+     * is only limited by {@link ExpressionsConfig#getMaximumDepth()}.
+     * <p>
+     * The predicates of the nested groups of the same kind (e.g. {@code a and (b and c)}) are added to the
+     * enclosing group, so the nesting of the created predicates is only that of alternating {@code $and} and {@code $or}.
+     * That includes the terms on the same collection to be rendered as a single {@code exists} subquery, so
+     * {@code a and (b and c)} and {@code a and b and c} create the same subqueries.
+     *
+     * @return the predicates of the top level nodes, to be "and"ed.
+     */
+    private static List<Predicate> getPredicates(Context context, Path<?> from, Node[] nodes) {
+        Deque<Group> stack = new ArrayDeque<>();
+        Group top = new Group(nodes, true);
+        stack.push(top);
+
+        while (true) {
+            Group group = stack.peek();
+            if (group.index < group.nodes.length) {
+                Node node = group.nodes[group.index++];
+                if (node instanceof Term term) {
+                    group.add(context, from, term);
+                } else if (node instanceof Junction junction) {
+                    stack.push(new Group(junction.children, !junction.or));
+                }
+                continue;
+            }
+
+            stack.pop();
+            Group parent = stack.peek();
+            if (parent != null && group.conjunction == parent.conjunction) {
+                parent.predicates.addAll(group.predicates);
+                parent.addExistsGroups(group.existsGroups);
+                continue;
+            }
+
+            group.addExistsGroups(context, from);
+            if (group == top) {
+                return group.predicates;
+            }
+            parent.predicates.add(combine(context.cb, group.predicates, group.conjunction));
         }
+    }
 
+    /**
+     * "and"s or "or"s the predicates, large groups are split into nested groups of at most {@link #MAXIMUM_GROUP_SIZE}
+     * predicates each, so the rendered sql is a balanced tree instead of a long flat (or left-deep) one,
+     * which the database parsers handle with bounded recursion, and a single predicate is returned as is.
+     */
+    static Predicate combine(CriteriaBuilder cb, List<Predicate> predicates, boolean conjunction) {
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
         Predicate[] array = predicates.toArray(new Predicate[0]);
-
-        return cb.and(array);
+        while (array.length > MAXIMUM_GROUP_SIZE) {
+            Predicate[] groups = new Predicate[(array.length + MAXIMUM_GROUP_SIZE - 1) / MAXIMUM_GROUP_SIZE];
+            for (int i = 0; i < groups.length; i++) {
+                Predicate[] chunk = Arrays.copyOfRange(array, i * MAXIMUM_GROUP_SIZE,
+                        Math.min(array.length, (i + 1) * MAXIMUM_GROUP_SIZE));
+                groups[i] = conjunction ? cb.and(chunk) : cb.or(chunk);
+            }
+            array = groups;
+        }
+        return conjunction ? cb.and(array) : cb.or(array);
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
-    private static List<Predicate> getPredicates(CriteriaQuery<?> query, CriteriaBuilder cb,
-                                                 Path<?> from, ManagedType<?> type,
-                                                 List<Expression> expressions) {
-
-        List<Predicate> predicates = new ArrayList<>();
-
-        for (Expression expression : expressions) {
-
-            if (expression instanceof SingularExpression singularExpression) {
-
-                final String field = extractField(singularExpression.field);
-                Attribute<?, ?> attribute = getAttribute(type, field);
-
-                if (attribute.isAssociation()) {
-                    if (attribute instanceof PluralAttribute) {
-                        query.distinct(true);
-                    }
-
-                    final SubField subField = extractSubField(singularExpression.field);
-                    if (!subField.name.isEmpty()) {
-                        final SingularExpression subExpression =
-                                new SingularExpression(subField.name, singularExpression.operator, singularExpression.value);
-                        predicates.addAll(
-                                getPredicates(query, cb,
-                                        reuseOrCreateJoin((From<?, ?>) from, attribute, field, subField.joinType),
-                                        extractSubFieldType(attribute),
-                                        singletonList(subExpression)
-                                )
-                        );
-                        continue;
-                    }
+    /**
+     * A group of nodes being visited, with the predicates created so far.
+     */
+    private static final class Group {
+        final Node[] nodes;
+        final boolean conjunction;
+        final List<Predicate> predicates;
+        int index;
+        Map<List<Hop>, List<Term>> existsGroups;
+
+        Group(Node[] nodes, boolean conjunction) {
+            this.nodes = nodes;
+            this.conjunction = conjunction;
+            this.predicates = new ArrayList<>(nodes.length);
+        }
+
+        void add(Context context, Path<?> from, Term term) {
+            if (context.exists && term.pluralHop >= 0) {
+                if (!conjunction) {
+                    predicates.add(exists(context, from, singletonList(term)));
+                    return;
+                }
+                // ANDed terms on the same collection go into the same subquery, so they match the same element
+                if (existsGroups == null) {
+                    existsGroups = new LinkedHashMap<>();
                 }
+                existsGroups.computeIfAbsent(Arrays.asList(term.hops).subList(0, term.pluralHop + 1),
+                        it -> new ArrayList<>()).add(term);
+                return;
+            }
+            predicates.add(getPredicate(context, from, term));
+        }
 
-                Path exprPath = from.get((SingularAttribute) attribute);
+        /**
+         * Takes over the terms of a nested group of the same kind, to be rendered along with the terms of this group.
+         */
+        void addExistsGroups(Map<List<Hop>, List<Term>> nested) {
+            if (nested == null) {
+                return;
+            }
+            if (existsGroups == null) {
+                existsGroups = nested;
+                return;
+            }
+            nested.forEach((hops, terms) -> existsGroups.computeIfAbsent(hops, it -> new ArrayList<>()).addAll(terms));
+        }
 
-                if (PersistentAttributeType.EMBEDDED == attribute.getPersistentAttributeType()) {
-                    final SubField subField = extractSubField(singularExpression.field);
-                    attribute = extractSubFieldType(attribute).getAttribute(subField.name);
-                    exprPath = exprPath.get((SingularAttribute) attribute);
+        void addExistsGroups(Context context, Path<?> from) {
+            if (existsGroups != null) {
+                for (List<Term> terms : existsGroups.values()) {
+                    predicates.add(exists(context, from, terms));
                 }
+            }
+        }
+    }
 
-                Object attributeValue = convertValueToAttributeType(singularExpression.value, attribute.getJavaType());
-                Predicate predicate;
-
-                switch (singularExpression.operator) {
-                    // equality
-                    case $eq:
-                        if (attributeValue == null) {
-                            predicate = cb.isNull(exprPath);
-                        } else {
-                            predicate = cb.equal(exprPath, attributeValue);
-                        }
-                        break;
-                    case $ieq:
-                        predicate = cb.equal(cb.lower(exprPath), ((String) attributeValue).toLowerCase());
-                        break;
-                    case $ne:
-                        if (attributeValue == null) {
-                            predicate = cb.isNotNull(exprPath);
-                        } else {
-                            predicate = cb.notEqual(exprPath, attributeValue);
-                        }
-                        break;
-
-                    // comparison
-                    case $gt:
-                        if (Number.class.isAssignableFrom(attribute.getJavaType())) {
-                            predicate = cb.gt(exprPath, (Number) attributeValue);
-                        } else if (Comparable.class.isAssignableFrom(attribute.getJavaType())) {
-                            predicate = cb.greaterThan(exprPath, (Comparable) attributeValue);
-                        } else {
-                            throw new IllegalArgumentException("field should be Number or Comparable: " + singularExpression);
-                        }
-                        break;
-                    case $gte:
-                        if (Number.class.isAssignableFrom(attribute.getJavaType())) {
-                            predicate = cb.ge(exprPath, (Number) attributeValue);
-                        } else if (Comparable.class.isAssignableFrom(attribute.getJavaType())) {
-                            predicate = cb.greaterThanOrEqualTo(exprPath, (Comparable) attributeValue);
-                        } else {
-                            throw new IllegalArgumentException("field should be Number or Comparable: " + singularExpression);
-                        }
-                        break;
-                    case $lt:
-                        if (Number.class.isAssignableFrom(attribute.getJavaType())) {
-                            predicate = cb.lt(exprPath, (Number) attributeValue);
-                        } else if (Comparable.class.isAssignableFrom(attribute.getJavaType())) {
-                            predicate = cb.lessThan(exprPath, (Comparable) attributeValue);
-                        } else {
-                            throw new IllegalArgumentException("field should be Number or Comparable: " + singularExpression);
-                        }
-                        break;
-                    case $lte:
-                        if (Number.class.isAssignableFrom(attribute.getJavaType())) {
-                            predicate = cb.le(exprPath, (Number) attributeValue);
-                        } else if (Comparable.class.isAssignableFrom(attribute.getJavaType())) {
-                            predicate = cb.lessThanOrEqualTo(exprPath, (Comparable) attributeValue);
-                        } else {
-                            throw new IllegalArgumentException("field should be Number or Comparable: " + singularExpression);
-                        }
-                        break;
-                    // like
-                    case $start:
-                        predicate = cb.like(exprPath.as(String.class), attributeValue + "%");
-                        break;
-                    case $end:
-                        predicate = cb.like(exprPath.as(String.class), "%" + attributeValue);
-                        break;
-                    case $contains:
-                        predicate = cb.like(exprPath.as(String.class), "%" + attributeValue + "%");
-                        break;
-                    case $istart:
-                        predicate = cb.like(cb.lower(exprPath.as(String.class)), attributeValue.toString().toLowerCase() + "%");
-                        break;
-                    case $iend:
-                        predicate = cb.like(cb.lower(exprPath.as(String.class)), "%" + attributeValue.toString().toLowerCase());
-                        break;
-                    case $icontains:
-                        predicate = cb.like(cb.lower(exprPath.as(String.class)), "%" + attributeValue.toString().toLowerCase() + "%");
-                        break;
-                    default:
-                        throw new IllegalStateException("Unexpected value: " + singularExpression);
-                }
+    private static Predicate getPredicate(Context context, Path<?> from, Term term) {
+        if (term.distinct) {
+            context.query.distinct(true);
+        }
 
-                predicates.add(predicate);
-
-            } else if (expression instanceof ListExpression listExpression) {
-
-                final String field = extractField(listExpression.field);
-                Attribute<?, ?> attribute = getAttribute(type, field);
-
-                if (attribute.isAssociation()) {
-                    if (attribute instanceof PluralAttribute) {
-                        query.distinct(true);
-                    }
-
-                    final SubField subField = extractSubField(listExpression.field);
-                    if (!subField.name.isEmpty()) {
-                        final ListExpression subExpression =
-                                new ListExpression(subField.name, listExpression.operator, listExpression.values);
-                        predicates.addAll(
-                                getPredicates(query, cb,
-                                        reuseOrCreateJoin((From<?, ?>) from, attribute, field, subField.joinType),
-                                        extractSubFieldType(attribute),
-                                        singletonList(subExpression)
-                                )
-                        );
-                        continue;
-                    }
-                }
+        for (Hop hop : term.hops) {
+            from = context.joins.join((From<?, ?>) from, hop);
+        }
 
-                Path exprPath = from.get((SingularAttribute) attribute);
+        return toPredicate(context, attributePath(from, term), term);
+    }
 
-                if (PersistentAttributeType.EMBEDDED == attribute.getPersistentAttributeType()) {
-                    final SubField subField = extractSubField(listExpression.field);
-                    attribute = extractSubFieldType(attribute).getAttribute(subField.name);
-                    exprPath = exprPath.get((SingularAttribute) attribute);
-                }
+    /**
+     * Resolves the path of the field of the given term (e.g. {@code department.name} or {@code name.ar})
+     * the same way fields of the expressions are resolved, reusing the joins already created
+     * (of any join type) or else left joining the associations, so the path doesn't change the rows
+     * matched by the predicate.
+     */
+    static Path<?> getPath(From<?, ?> from, Term term) {
+        JoinRegistry joins = new JoinRegistry();
+        Path<?> path = from;
+        for (Hop hop : term.hops) {
+            path = joins.joinForPath((From<?, ?>) path, hop);
+        }
+        return attributePath(path, term);
+    }
 
-                List<Object> attributeValues = convertValueToAttributeType(listExpression.values, attribute.getJavaType());
-
-                Predicate predicate;
-                switch (listExpression.operator) {
-                    // in
-                    case $in:
-                        CriteriaBuilder.In in = cb.in(exprPath);
-                        attributeValues.forEach(in::value);
-                        predicate = in;
-                        break;
-                    case $nin:
-                        CriteriaBuilder.In inx = cb.in(exprPath);
-                        attributeValues.forEach(inx::value);
-                        predicate = cb.not(inx);
-                        break;
-                    default:
-                        throw new IllegalStateException("Unexpected value: " + listExpression);
-                }
-                predicates.add(predicate);
-
-            } else if (expression instanceof OrExpression) {
-                predicates.add(cb.or(
-                        getPredicates(query, cb, from, type,
-                                ((OrExpression) expression).expressions).toArray(new Predicate[0])
-                ));
-
-            } else if (expression instanceof AndExpression) {
-                predicates.add(cb.and(
-                        getPredicates(query, cb, from, type,
-                                ((AndExpression) expression).expressions).toArray(new Predicate[0])
-                ));
+    /**
+     * Renders the terms as a correlated {@code exists} subquery on the first collection association
+     * (all terms share the same association hops up to and including the collection).
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Predicate exists(Context context, Path<?> from, List<Term> terms) {
+        final Term first = terms.get(0);
+
+        for (int i = 0; i < first.pluralHop; i++) {
+            from = context.joins.join((From<?, ?>) from, first.hops[i]);
+        }
+
+        Subquery<Integer> subquery = context.query.subquery(Integer.class);
+        From correlated = from instanceof Root root ? subquery.correlate(root) : subquery.correlate((Join) from);
+        From<?, ?> collection = correlated.join(first.hops[first.pluralHop].name(), JoinType.INNER);
+
+        Predicate[] predicates = new Predicate[terms.size()];
+        for (int i = 0; i < predicates.length; i++) {
+            Term term = terms.get(i);
+            Path<?> path = collection;
+            for (int h = term.pluralHop + 1; h < term.hops.length; h++) {
+                path = context.joins.join((From<?, ?>) path, term.hops[h]);
             }
+            predicates[i] = toPredicate(context, attributePath(path, term), term);
         }
 
-        return predicates;
+        subquery.select(context.cb.literal(1)).where(predicates);
+        return context.cb.exists(subquery);
     }
 
-    private static Attribute<?, ?> getAttribute(ManagedType<?> type, String field) {
-        try {
-            return type.getAttribute(field);
-        } catch (IllegalArgumentException ex) {
-            throw new IllegalArgumentException(
-                    String.format(
-                            "Unable to locate attribute with the given name [%s] on this ManagedType [%s]," +
-                                    " Are you sure this ManagedType or one of its ancestors contains such attribute?",
-                            field,
-                            type.getJavaType().getName()
-                    )
-            );
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Path<?> attributePath(Path<?> from, Term term) {
+        Path exprPath = from.get((SingularAttribute) term.attribute);
+
+        if (term.embedded != null) {
+            exprPath = exprPath.get((SingularAttribute) term.embedded);
         }
+        return exprPath;
     }
 
-    private static Path<?> reuseOrCreateJoin(From<?, ?> from, Attribute<?, ?> attribute, String field, JoinType joinType) {
-        return from.getJoins().stream()
-                .filter(it -> it.getAttribute() == attribute)
-                .findFirst()
-                .orElseGet(() -> from.join(field, joinType));
-    }
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Predicate toPredicate(Context context, Path exprPath, Term term) {
+        final CriteriaBuilder cb = context.cb;
+        final Object value = context.values.get(term.valueIndex);
+
+        if (term.list) {
+            List<Object> attributeValues = convertAll(term, (List<Object>) value);
+
+            switch (term.operator) {
+                // in
+                case $in:
+                    return in(context, exprPath, term.javaType, attributeValues);
+                case $nin:
+                    return cb.not(in(context, exprPath, term.javaType, attributeValues));
+                default:
+                    throw new IllegalStateException("Unexpected value: " + term.operator);
+            }
+        }
+
+        Object attributeValue = isLike(term.operator) ? textOf(value) : convert(term, value);
+        final boolean bind = context.bind;
 
-    @SuppressWarnings({"rawtypes"})
-    private static ManagedType<?> extractSubFieldType(Attribute<?, ?> attribute) {
-        return (ManagedType<?>) (attribute.isCollection() ? ((PluralAttribute) attribute).getElementType() :
-                (((SingularAttribute) attribute).getType()));
+        switch (term.operator) {
+            // equality
+            case $eq:
+                if (attributeValue == null) {
+                    return cb.isNull(exprPath);
+                }
+                return bind ? cb.equal(exprPath, context.parameter(term.javaType, attributeValue)) :
+                        cb.equal(exprPath, attributeValue);
+            case $ieq:
+                String lowerValue = ((String) attributeValue).toLowerCase();
+                return bind ? cb.equal(lowerPath(cb, exprPath, term), context.parameter(String.class, lowerValue)) :
+                        cb.equal(lowerPath(cb, exprPath, term), lowerValue);
+            case $ne:
+                if (attributeValue == null) {
+                    return cb.isNotNull(exprPath);
+                }
+                return bind ? cb.notEqual(exprPath, context.parameter(term.javaType, attributeValue)) :
+                        cb.notEqual(exprPath, attributeValue);
+
+            // comparison
+            case $gt:
+                if (term.comparison == Comparison.NUMBER) {
+                    return bind ? cb.gt(exprPath, context.parameter(term.javaType, attributeValue)) :
+                            cb.gt(exprPath, (Number) attributeValue);
+                }
+                return bind ? cb.greaterThan(exprPath, context.parameter(term.javaType, attributeValue)) :
+                        cb.greaterThan(exprPath, (Comparable) attributeValue);
+            case $gte:
+                if (term.comparison == Comparison.NUMBER) {
+                    return bind ? cb.ge(exprPath, context.parameter(term.javaType, attributeValue)) :
+                            cb.ge(exprPath, (Number) attributeValue);
+                }
+                return bind ? cb.greaterThanOrEqualTo(exprPath, context.parameter(term.javaType, attributeValue)) :
+                        cb.greaterThanOrEqualTo(exprPath, (Comparable) attributeValue);
+            case $lt:
+                if (term.comparison == Comparison.NUMBER) {
+                    return bind ? cb.lt(exprPath, context.parameter(term.javaType, attributeValue)) :
+                            cb.lt(exprPath, (Number) attributeValue);
+                }
+                return bind ? cb.lessThan(exprPath, context.parameter(term.javaType, attributeValue)) :
+                        cb.lessThan(exprPath, (Comparable) attributeValue);
+            case $lte:
+                if (term.comparison == Comparison.NUMBER) {
+                    return bind ? cb.le(exprPath, context.parameter(term.javaType, attributeValue)) :
+                            cb.le(exprPath, (Number) attributeValue);
+                }
+                return bind ? cb.lessThanOrEqualTo(exprPath, context.parameter(term.javaType, attributeValue)) :
+                        cb.lessThanOrEqualTo(exprPath, (Comparable) attributeValue);
+            // like
+            case $start:
+                return startsWith(context, stringPath(exprPath, term), String.valueOf(attributeValue),
+                        term.javaType == String.class);
+            case $end:
+                return like(context, stringPath(exprPath, term), "%" + attributeValue);
+            case $contains:
+                return like(context, stringPath(exprPath, term), "%" + attributeValue + "%");
+            case $istart:
+                return startsWith(context, lowerPath(cb, exprPath, term), attributeValue.toString().toLowerCase(),
+                        term.caseInsensitive);
+            case $iend:
+                return like(context, lowerPath(cb, exprPath, term), "%" + attributeValue.toString().toLowerCase());
+            case $icontains:
+                return like(context, lowerPath(cb, exprPath, term), "%" + attributeValue.toString().toLowerCase() + "%");
+            default:
+                throw new IllegalStateException("Unexpected value: " + term.operator);
+        }
     }
 
-    private static String extractField(String field) {
-        return field.contains(".") ? field.split("\\.")[0]
-                .replaceAll("^[<>]+", "")   // remove '<' and '>' at start (left/right join indicators)
-                .replaceAll("\\?$", "")     // remove '?' at end (left join indicators - optional chaining operator)
-                : field;
+    /**
+     * The like operators match the text of the value as is, e.g. {@code 1} on a decimal attribute is not {@code 1.0}.
+     */
+    private static boolean isLike(Operator operator) {
+        switch (operator) {
+            case $start:
+            case $end:
+            case $contains:
+            case $istart:
+            case $iend:
+            case $icontains:
+                return true;
+            default:
+                return false;
+        }
     }
 
-    private static SubField extractSubField(String field) {
-        //if field is "abc.efg.xyz", then mainField=>"abc" and subField => "efg.xyz", so to support n-level association
-        String mainField = Arrays.stream(field.split("\\.")).limit(1).collect(Collectors.joining("."));
-        String subField = Arrays.stream(field.split("\\.")).skip(1).collect(Collectors.joining("."));
+    /**
+     * Converts the value to the type of the attribute, naming the field if it can't be converted.
+     */
+    private static Object convert(Term term, Object value) {
+        try {
+            return term.converter.convert(value);
+        } catch (IllegalArgumentException e) {
+            throw invalidValue(term, e);
+        }
+    }
 
-        JoinType joinType = mainField.startsWith("<") || mainField.endsWith("?") ? JoinType.LEFT // <abc or abc?
-                : mainField.startsWith(">") ? JoinType.RIGHT // >abc
-                : JoinType.INNER;   // abc
-        return new SubField(subField, joinType);
+    private static List<Object> convertAll(Term term, List<Object> values) {
+        try {
+            return term.converter.convert(values);
+        } catch (IllegalArgumentException e) {
+            throw invalidValue(term, e);
+        }
     }
 
-    private record SubField(String name, JoinType joinType) {
+    private static IllegalArgumentException invalidValue(Term term, IllegalArgumentException cause) {
+        return new IllegalArgumentException(
+                String.format("invalid value of field %s: %s", fieldOf(term), cause.getMessage()), cause);
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
-    private static Object convertValueToAttributeType(Object value, Class javaType) {
-        if (value == null) {
-            return null;
-        }
-        if (javaType.equals(LocalDate.class)) {
-            return LocalDate.parse((CharSequence) value);
-        }
-        if (javaType.equals(Instant.class)) {
-            return Instant.parse((CharSequence) value);
+    private static String fieldOf(Term term) {
+        StringBuilder field = new StringBuilder();
+        for (Hop hop : term.hops) {
+            field.append(hop.name()).append('.');
         }
-        if (javaType.equals(LocalDateTime.class)) {
-            return LocalDateTime.parse((CharSequence) value);
+        field.append(term.attribute.getName());
+        if (term.embedded != null) {
+            field.append('.').append(term.embedded.getName());
         }
-        if (javaType.equals(OffsetDateTime.class)) {
-            return OffsetDateTime.parse((CharSequence) value);
+        return field.toString();
+    }
+
+    private static Object textOf(Object value) {
+        return value instanceof Temporal temporal ? DateTimeUtil.format(temporal) : value;
+    }
+
+    /**
+     * Casts the path to string only if it is not a string already (e.g. a number),
+     * as the cast hides the column from its indexes.
+     */
+    @SuppressWarnings({"unchecked"})
+    private static jakarta.persistence.criteria.Expression<String> stringPath(Path<?> exprPath, Term term) {
+        return term.javaType == String.class ? (Path<String>) exprPath : exprPath.as(String.class);
+    }
+
+    /**
+     * Returns the path to match against the lower case values: the normalized attribute or the path itself
+     * of {@link CaseInsensitive} attributes, otherwise {@code lower(path)}.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static jakarta.persistence.criteria.Expression<String> lowerPath(CriteriaBuilder cb, Path<?> exprPath,
+                                                                           Term term) {
+        if (term.normalized != null) {
+            return exprPath.getParentPath().get((SingularAttribute) term.normalized);
         }
-        if (javaType.equals(ZonedDateTime.class)) {
-            return ZonedDateTime.parse((CharSequence) value);
+        return term.caseInsensitive ? stringPath(exprPath, term) : cb.lower(stringPath(exprPath, term));
+    }
+
+    /**
+     * Renders the prefix match as a half-open range ({@code col >= 'abc' and col < 'abd'}) if enabled
+     * by {@link ExpressionsConfig#setPrefixMatchAsRange(boolean)} and the path is a column (not a function of it),
+     * otherwise as {@code col like 'abc%'}.
+     */
+    private static Predicate startsWith(Context context, jakarta.persistence.criteria.Expression<String> x,
+                                        String prefix, boolean column) {
+        if (!column || !ExpressionsConfig.getInstance().isPrefixMatchAsRange() || prefix.isEmpty()
+                || prefix.indexOf('%') >= 0 || prefix.indexOf('_') >= 0) {
+            return like(context, x, prefix + "%");
         }
-        if (javaType.equals(HijrahDate.class)) {
-            return DateTimeUtil.parseHijrah((String) value);
+        final CriteriaBuilder cb = context.cb;
+        final boolean bind = context.bind;
+
+        Predicate lower = bind ? cb.greaterThanOrEqualTo(x, context.parameter(String.class, prefix)) :
+                cb.greaterThanOrEqualTo(x, prefix);
+        String upperBound = prefixUpperBound(prefix);
+        if (upperBound == null) {
+            return lower;
         }
-        if (javaType.isEnum()) {
-            if (Number.class.isAssignableFrom(value.getClass())) {
-                return javaType.getEnumConstants()[((Number) value).intValue()];
-            } else if (String.class.isAssignableFrom(value.getClass())) {
-                return Enum.valueOf(javaType, (String) value);
-            } else {
-                return Enum.valueOf(javaType, ((Enum<?>) value).name());
+        return cb.and(lower, bind ? cb.lessThan(x, context.parameter(String.class, upperBound)) :
+                cb.lessThan(x, upperBound));
+    }
+
+    /**
+     * @return the smallest string greater than all the strings starting with the given prefix
+     * (e.g. {@code abd} for {@code abc}), or null if there is no such string.
+     */
+    static String prefixUpperBound(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (c + 1);
             }
         }
-        if (javaType.equals(UUID.class)) {
-            return UUID.fromString((String) value);
+        return null;
+    }
+
+    private static Predicate like(Context context, jakarta.persistence.criteria.Expression<String> x, String pattern) {
+        return context.bind ? context.cb.like(x, context.parameter(String.class, pattern)) :
+                context.cb.like(x, pattern);
+    }
+
+    private static Predicate in(Context context, Path<?> exprPath, Class<?> javaType, List<Object> values) {
+        return context.inListStrategy.in(new InListContext(context, exprPath, javaType, values));
+    }
+
+    /**
+     * Holds the state of building the predicate of a single query.
+     */
+    private static final class Context {
+        final CriteriaQuery<?> query;
+        final CriteriaBuilder cb;
+        final List<Object> values;
+        final List<ParameterBinding> bindings;
+        final boolean bind;
+        final boolean exists;
+        final JoinRegistry joins;
+        final InListStrategy inListStrategy = ExpressionsConfig.getInstance().getInListStrategy();
+
+        Context(CriteriaQuery<?> query, CriteriaBuilder cb, List<Object> values, List<ParameterBinding> bindings,
+                boolean bind, boolean exists, JoinRegistry joins) {
+            this.query = query;
+            this.cb = cb;
+            this.values = values;
+            this.bindings = bindings;
+            this.bind = bind;
+            this.exists = exists;
+            this.joins = joins;
         }
 
-        // strings and numeric types don't need  conversion
-        return value;
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        ParameterExpression parameter(Class<?> javaType, Object value) {
+            if (bindings == null) {
+                throw new IllegalStateException("parameters can't be bound on queries created by the caller");
+            }
+            ParameterExpression parameter = cb.parameter(ClassUtils.resolvePrimitiveIfNecessary(javaType));
+            bindings.add(new ParameterBinding(parameter, value));
+            return parameter;
+        }
     }
 
-    @SuppressWarnings({"rawtypes"})
-    private static List<Object> convertValueToAttributeType(List<Object> values, Class javaType) {
-        if (values == null || values.isEmpty() || values.get(0).getClass().equals(javaType)) {
-            return values;
+    private record InListContext(Context context, Path<?> path, Class<?> javaType, List<Object> values)
+            implements InListStrategy.Context {
+
+        @Override
+        public CriteriaBuilder getCriteriaBuilder() {
+            return context.cb;
         }
 
-        if (javaType.equals(Short.class)) {
-            return values.stream().map(it -> ((Integer) it).shortValue()).collect(toList());
+        @Override
+        public Path<?> getPath() {
+            return path;
         }
-        if (javaType.equals(Long.class)) {
-            return values.stream().map(it -> ((Integer) it).longValue()).collect(toList());
+
+        @Override
+        public Class<?> getJavaType() {
+            return javaType;
         }
-        if (javaType.equals(Byte.class)) {
-            return values.stream().map(it -> ((Integer) it).byteValue()).collect(toList());
+
+        @Override
+        public List<Object> getValues() {
+            return values;
         }
-        if (javaType.equals(Double.class)) {
-            return values.stream().map(it -> ((Integer) it).doubleValue()).collect(toList());
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <V> jakarta.persistence.criteria.Expression<V> valueOf(Class<V> type, Object value) {
+            return context.bind ? context.parameter(type, value) : context.cb.literal((V) value);
         }
-        if (javaType.equals(Float.class)) {
-            return values.stream().map(it -> ((Integer) it).floatValue()).collect(toList());
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <V> jakarta.persistence.criteria.Expression<V> parameterOf(Class<V> type, Object value) {
+            return context.parameter(type, value);
         }
 
-        return values.stream().map(it -> convertValueToAttributeType(it, javaType)).collect(toList());
+        @Override
+        public boolean canBindParameters() {
+            return context.bindings != null;
+        }
+    }
+
+    record ParameterBinding(ParameterExpression<?> parameter, Object value) {
     }
 }
@@ -0,0 +1,68 @@
+package com.github.mhewedy.expressions;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.ProjectionInformation;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resolves the properties to select for the projections used in
+ * {@link ExpressionsRepository#findAll(Expressions, Class, org.springframework.data.domain.Pageable)}.
+ */
+final class ExpressionsProjections {
+
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+    private ExpressionsProjections() {
+    }
+
+    /**
+     * Returns the projection properties, which are the getters of closed interface projections,
+     * the components of records or the parameters of the constructor of DTO classes.
+     */
+    static List<String> propertiesOf(Class<?> projection, ProjectionFactory projectionFactory) {
+        if (projection.isInterface()) {
+            ProjectionInformation information = projectionFactory.getProjectionInformation(projection);
+            if (!information.isClosed()) {
+                throw new IllegalArgumentException("only closed interface projections are supported: " + projection);
+            }
+            return information.getInputProperties().stream().map(PropertyDescriptor::getName).toList();
+        }
+        if (projection.isRecord()) {
+            return Arrays.stream(projection.getRecordComponents()).map(RecordComponent::getName).toList();
+        }
+
+        Constructor<?>[] constructors = projection.getConstructors();
+        if (constructors.length != 1) {
+            throw new IllegalArgumentException("DTO projection should have a single public constructor: " + projection);
+        }
+        String[] names = PARAMETER_NAME_DISCOVERER.getParameterNames(constructors[0]);
+        if (names == null) {
+            throw new IllegalArgumentException("unable to discover the constructor parameter names of: " + projection +
+                    ", compile with the -parameters flag");
+        }
+        return Arrays.asList(names);
+    }
+
+    /**
+     * Converts the projection property (e.g. {@code departmentName}) into a field path understood by
+     * the {@link ExpressionsPredicateBuilder} (e.g. {@code <department.name}), the associations are left joined,
+     * so a null association doesn't filter out the row.
+     */
+    static String fieldOf(String property, Class<?> domainClass) {
+        String[] segments = PropertyPath.from(property, domainClass).toDotPath().split("\\.");
+        List<String> field = new ArrayList<>(segments.length);
+        for (int i = 0; i < segments.length; i++) {
+            field.add(i < segments.length - 1 ? "<" + segments[i] : segments[i]);
+        }
+        return String.join(".", field);
+    }
+}
@@ -2,11 +2,13 @@ package com.github.mhewedy.expressions;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.NoRepositoryBean;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @NoRepositoryBean
 public interface ExpressionsRepository<T, ID> extends JpaRepository<T, ID> {
@@ -17,5 +19,89 @@ public interface ExpressionsRepository<T, ID> extends JpaRepository<T, ID> {
 
     Page<T> findAll(Expressions expressions, Pageable pageable);
 
+    /**
+     * Fetches the given associations along with the entities, reusing the joins of the expressions on them.
+     */
+    List<T> findAll(Expressions expressions, Sort sort, ExpressionsFetch fetch);
+
+    /**
+     * Fetches the given associations along with the entities of the page, reusing the joins of the expressions on them.
+     * <p>
+     * When a collection is fetched, the page is fetched in two steps to not paginate in memory:
+     * the ids of the page are selected first, then the entities are loaded by their ids along with the associations.
+     */
+    Page<T> findAll(Expressions expressions, Pageable pageable, ExpressionsFetch fetch);
+
     long count(Expressions expressions);
+
+    /**
+     * Fetches the requested page without issuing a count query, by fetching one more element than the page size
+     * to know whether a next slice exists.
+     */
+    Slice<T> findSlice(Expressions expressions, Pageable pageable);
+
+    /**
+     * Counts the matching elements, but stops counting once the limit is reached,
+     * so it is cheap even when many rows match, example:
+     * <pre>
+     * long count = employeeRepository.countAtMost(expressions, 10_001);
+     * String label = count &gt; 10_000 ? "10,000+" : String.valueOf(count);
+     * </pre>
+     * The matching rows are fetched up to the limit and counted, only a constant is selected for each row
+     * (or the id, when the rows are made distinct by a collection filter), so up to {@code limit} rows are transferred
+     * from the database, keep the limit small. Filters on collection associations are rendered per the
+     * {@link Expressions#collectionFilterMode(CollectionFilterMode) collection filter mode}, prefer
+     * {@link CollectionFilterMode#EXISTS} to not make the rows distinct.
+     *
+     * @return the number of matching elements, or {@code limit} if there are as many or more.
+     */
+    long countAtMost(Expressions expressions, long limit);
+
+    /**
+     * Selects only the columns needed by the projection instead of the whole entity.
+     * <p>
+     * The projection could be a closed interface, a record or a DTO class with a single constructor,
+     * its properties are matched against the entity properties, including nested ones
+     * (e.g. {@code departmentName} selects {@code department.name}).
+     * <p>
+     * Expressions on collection associations are always rendered as {@link CollectionFilterMode#EXISTS}
+     * in projection queries, so the rows are not made distinct by the projected columns.
+     */
+    <P> Page<P> findAll(Expressions expressions, Class<P> projection, Pageable pageable);
+
+    /**
+     * Keyset (seek) pagination, fetches the window of results that comes after the position of the cursor,
+     * which unlike offset pagination, doesn't get slower when moving deeper in the result set.
+     * <p>
+     * The sort properties could be joined or embedded paths (e.g. {@code department.name} or {@code name.ar}).
+     * The id is appended to the sort (if not already included) to make it unique, except for composite ids,
+     * where the sort has to be unique by itself.
+     * <p>
+     * The associations of the sort properties are left joined, and the null values of the nullable properties
+     * are placed as requested by {@link Sort.NullHandling}, otherwise they are considered greater than
+     * the other values (i.e. last for ascending orders), regardless of the database default,
+     * so the rows having null values are neither skipped nor repeated between the windows.
+     */
+    KeysetWindow<T> findAll(Expressions expressions, Sort sort, KeysetCursor cursor);
+
+    /**
+     * Streams the results using a forward-only database cursor, to iterate over large result sets
+     * in bounded memory, the streamed entities are detached periodically while iterating
+     * (after flushing the persistence context), the other entities of the persistence context are kept.
+     * <p>
+     * Must be called within a transaction, preferably a dedicated read-only one.
+     * The returned stream must be closed after use, example:
+     * <pre>
+     * &#64;Transactional(readOnly = true)
+     * public void export(Expressions expressions) {
+     *     try (Stream&lt;Employee&gt; employees = employeeRepository.streamAll(expressions, Sort.by("id"))) {
+     *         employees.forEach(writer::write);
+     *     }
+     * }
+     * </pre>
+     *
+     * @see ExpressionsConfig#setStreamFetchSize(int)
+     * @see ExpressionsConfig#setStreamClearInterval(int)
+     */
+    Stream<T> streamAll(Expressions expressions, Sort sort);
 }
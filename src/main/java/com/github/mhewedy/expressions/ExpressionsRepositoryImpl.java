@@ -1,72 +1,870 @@
 package com.github.mhewedy.expressions;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import com.github.mhewedy.expressions.ExpressionsPlan.Term;
+import com.github.mhewedy.expressions.ExpressionsPredicateBuilder.ParameterBinding;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.criteria.CriteriaBuilder;
-import jakarta.persistence.criteria.CriteriaQuery;
-import jakarta.persistence.criteria.Predicate;
-import jakarta.persistence.criteria.Root;
+import jakarta.persistence.Parameter;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.*;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
 public class ExpressionsRepositoryImpl<T, ID>
         extends SimpleJpaRepository<T, ID> implements ExpressionsRepository<T, ID> {
 
+    private static final String HINT_FETCH_SIZE = "org.hibernate.fetchSize";
+    private static final String HINT_READ_ONLY = "org.hibernate.readOnly";
+
+    private static final ProjectionFactory PROJECTION_FACTORY = new SpelAwareProxyProjectionFactory();
+
     private static Object OBJECT_MAPPER;
     private static final boolean OBJECT_MAPPER_PRESENT = ClassUtils.isPresent("com.fasterxml.jackson.databind.ObjectMapper",
             ExpressionsRepositoryImpl.class.getClassLoader());
 
+    private static final boolean MICROMETER_PRESENT = ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry",
+            ExpressionsRepositoryImpl.class.getClassLoader());
+
     static {
         if (OBJECT_MAPPER_PRESENT) {
-            OBJECT_MAPPER = new ObjectMapper();
+            OBJECT_MAPPER = new ObjectMapper().registerModule(new ExpressionsModule());
         }
     }
 
+    private final JpaEntityInformation<T, ?> entityInformation;
+    private final EntityManager entityManager;
+
     public ExpressionsRepositoryImpl(JpaEntityInformation<T, Long>
                                              entityInformation, EntityManager entityManager) {
         super(entityInformation, entityManager);
+        this.entityInformation = entityInformation;
+        this.entityManager = entityManager;
     }
 
     @Override
     public List<T> findAll(Expressions expressions) {
-        return findAll(new ExpressionsSpecification<>(expressions));
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        return specification.isUnsatisfiable() ? Collections.emptyList() :
+                observe("findAll", specification, () -> findAll(specification));
     }
 
     @Override
     public List<T> findAll(Expressions expressions, Sort sort) {
-        return findAll(new ExpressionsSpecification<>(expressions), sort);
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        return specification.isUnsatisfiable() ? Collections.emptyList() :
+                observe("findAll", specification, () -> findAll(specification, sort));
     }
 
     @Override
     public Page<T> findAll(Expressions expressions, Pageable pageable) {
-        return findAll(new ExpressionsSpecification<>(expressions), pageable);
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        if (specification.isUnsatisfiable()) {
+            return Page.empty(pageable);
+        }
+        if (pageable.isPaged() && expressions.getPaginationMode() == PaginationMode.IDS_FIRST && hasSingleId()) {
+            return observe("page", specification,
+                    () -> findPageByIds(specification, pageable, Collections.emptyList()));
+        }
+        return observe("page", specification, () -> findAll(specification, pageable));
+    }
+
+    @Override
+    public List<T> findAll(Expressions expressions, Sort sort, ExpressionsFetch fetch) {
+        Assert.notNull(sort, "sort must not be null!");
+        Assert.notNull(fetch, "fetch must not be null!");
+
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        return specification.isUnsatisfiable() ? Collections.emptyList() :
+                observe("findAll", specification, () -> findAll(specification, sort, fetch.getPaths(entityManager)));
+    }
+
+    private List<T> findAll(ExpressionsSpecification<T> specification, Sort sort, List<String> fetchPaths) {
+        return getFetchQuery(specification, sort, fetchPaths).getResultList();
+    }
+
+    @Override
+    public Page<T> findAll(Expressions expressions, Pageable pageable, ExpressionsFetch fetch) {
+        Assert.notNull(pageable, "pageable must not be null!");
+        Assert.notNull(fetch, "fetch must not be null!");
+
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        if (specification.isUnsatisfiable()) {
+            return Page.empty(pageable);
+        }
+        return observe("page", specification,
+                () -> findAll(specification, expressions, pageable, fetch.getPaths(entityManager)));
+    }
+
+    private Page<T> findAll(ExpressionsSpecification<T> specification, Expressions expressions, Pageable pageable,
+                            List<String> fetchPaths) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findAll(specification, pageable.getSort(), fetchPaths));
+        }
+        if (fetchesCollection(fetchPaths)) {
+            Assert.isTrue(hasSingleId(), "fetching collections in pages requires a single id attribute!");
+            return findPageByIds(specification, pageable, fetchPaths);
+        }
+
+        TypedQuery<T> query = getFetchQuery(specification, pageable.getSort(), fetchPaths);
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize());
+
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(specification));
+    }
+
+    private TypedQuery<T> getFetchQuery(ExpressionsSpecification<T> specification, Sort sort, List<String> fetchPaths) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(getDomainClass());
+        Root<T> root = query.from(getDomainClass());
+
+        // the fetches go first, so the predicate joins them instead of joining the same associations again
+        fetch(root, fetchPaths, filterJoinTypes(root.getModel(), specification.expressions));
+        List<ParameterBinding> bindings = new ArrayList<>();
+        query.select(root).where(specification.toPredicate(root, query, cb, bindings));
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return bindParameters(bindings, entityManager.createQuery(query));
+    }
+
+    /**
+     * Selects the ids of the page first, then loads the entities of these ids (along with the fetched associations),
+     * so the database paginates the ids only, and Hibernate doesn't paginate the fetched rows in memory.
+     * <p>
+     * The sort values are selected along with the ids, as a distinct query (collection filters)
+     * can only be ordered by the selected values.
+     */
+    private Page<T> findPageByIds(ExpressionsSpecification<T> specification, Pageable pageable, List<String> fetchPaths) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(getDomainClass());
+
+        List<ParameterBinding> bindings = new ArrayList<>();
+        query.where(specification.toPredicate(root, query, cb, bindings));
+
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(root.get(entityInformation.getIdAttribute()));
+        if (pageable.getSort().isSorted()) {
+            List<Order> orders = QueryUtils.toOrders(pageable.getSort(), root, cb);
+            for (Order order : orders) {
+                selections.add(order.getExpression());
+            }
+            query.orderBy(orders);
+        }
+        query.multiselect(selections);
+
+        List<Tuple> tuples = bindParameters(bindings, entityManager.createQuery(query))
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        List<Object> ids = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            ids.add(tuple.get(0));
+        }
+        return PageableExecutionUtils.getPage(findAllByIds(ids, fetchPaths), pageable, () -> count(specification));
+    }
+
+    private boolean hasSingleId() {
+        return !entityInformation.hasCompositeId() && entityInformation.getIdAttribute() != null;
+    }
+
+    /**
+     * @return the entities of the given ids, in the same order.
+     */
+    private List<T> findAllByIds(List<Object> ids, List<String> fetchPaths) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(getDomainClass());
+        Root<T> root = query.from(getDomainClass());
+
+        fetch(root, fetchPaths, Collections.emptyMap());
+        query.select(root).where(root.get(entityInformation.getIdAttribute()).in(ids));
+
+        Map<Object, T> entities = new HashMap<>(ids.size() * 2);
+        for (T entity : entityManager.createQuery(query).getResultList()) {
+            entities.put(entityInformation.getId(entity), entity);
+        }
+
+        List<T> content = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            T entity = entities.get(id);
+            if (entity != null) {   // deleted in between
+                content.add(entity);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Fetches the associations of the paths, using the join type of the filter on the same association if any,
+     * so the filter reuses the fetch join, otherwise left joins.
+     * Collections are always left joined, as filtering on a fetched collection would only fetch the matching elements.
+     */
+    private static void fetch(Root<?> root, List<String> fetchPaths, Map<String, JoinType> filterJoinTypes) {
+        for (String fetchPath : fetchPaths) {
+            FetchParent<?, ?> parent = root;
+            ManagedType<?> type = root.getModel();
+            String path = "";
+            boolean collection = false;
+
+            for (String name : StringUtils.delimitedListToStringArray(fetchPath, ".")) {
+                Attribute<?, ?> attribute = type.getAttribute(name);
+                if (!attribute.isAssociation()) {
+                    break;
+                }
+                path = path.isEmpty() ? name : path + "." + name;
+                collection = collection || attribute.isCollection();
+                JoinType joinType = collection ? JoinType.LEFT : filterJoinTypes.getOrDefault(path, JoinType.LEFT);
+
+                parent = fetchOf(parent, attribute, joinType);
+                type = (ManagedType<?>) (attribute.isCollection() ? ((PluralAttribute<?, ?, ?>) attribute).getElementType() :
+                        ((SingularAttribute<?, ?>) attribute).getType());
+            }
+        }
+    }
+
+    private static FetchParent<?, ?> fetchOf(FetchParent<?, ?> parent, Attribute<?, ?> attribute, JoinType joinType) {
+        for (Fetch<?, ?> fetch : parent.getFetches()) {
+            if (fetch.getAttribute() == attribute && fetch.getJoinType() == joinType) {
+                return fetch;
+            }
+        }
+        return parent.fetch(attribute.getName(), joinType);
+    }
+
+    /**
+     * @return the join types used by the expressions for the singular associations, by their path.
+     */
+    private static Map<String, JoinType> filterJoinTypes(ManagedType<?> type, Expressions expressions) {
+        Map<String, JoinType> joinTypes = new HashMap<>();
+        for (Expressions.Field field : expressions.extractFields()) {
+            FieldPath fieldPath = FieldPath.of(type, field.name());
+            String path = "";
+            for (int i = 0; i < fieldPath.hops.length && i != fieldPath.pluralHop; i++) {
+                path = path.isEmpty() ? fieldPath.hops[i].name() : path + "." + fieldPath.hops[i].name();
+                joinTypes.putIfAbsent(path, fieldPath.hops[i].joinType());
+            }
+        }
+        return joinTypes;
+    }
+
+    private boolean fetchesCollection(List<String> fetchPaths) {
+        ManagedType<T> domainType = entityManager.getMetamodel().managedType(getDomainClass());
+        for (String fetchPath : fetchPaths) {
+            ManagedType<?> type = domainType;
+            for (String name : StringUtils.delimitedListToStringArray(fetchPath, ".")) {
+                Attribute<?, ?> attribute = type.getAttribute(name);
+                if (!attribute.isAssociation()) {
+                    break;
+                }
+                if (attribute.isCollection()) {
+                    return true;
+                }
+                type = (ManagedType<?>) ((SingularAttribute<?, ?>) attribute).getType();
+            }
+        }
+        return false;
     }
 
     @Override
     public long count(Expressions expressions) {
-        return count(new ExpressionsSpecification<>(expressions));
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        return specification.isUnsatisfiable() ? 0 : observe("count", specification, () -> count(specification));
+    }
+
+    @Override
+    public Slice<T> findSlice(Expressions expressions, Pageable pageable) {
+        Assert.notNull(pageable, "pageable must not be null!");
+
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        if (specification.isUnsatisfiable()) {
+            return new SliceImpl<>(Collections.emptyList(), pageable, false);
+        }
+        return observe("slice", specification, () -> findSlice(specification, pageable));
+    }
+
+    private Slice<T> findSlice(ExpressionsSpecification<T> specification, Pageable pageable) {
+        TypedQuery<T> query = getQuery(specification, pageable.getSort());
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(query.getResultList());
+        }
+
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize() + 1);
+        List<T> content = query.getResultList();
+
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public long countAtMost(Expressions expressions, long limit) {
+        Assert.isTrue(limit > 0 && limit <= Integer.MAX_VALUE, "limit must be between 1 and Integer.MAX_VALUE!");
+
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        if (specification.isUnsatisfiable()) {
+            return 0;
+        }
+        return observe("countAtMost", specification, () -> countAtMost(specification, (int) limit));
+    }
+
+    /**
+     * Fetches up to {@code limit} rows and counts them, as a subquery in the from clause can't be expressed
+     * in the criteria api, a constant is selected for each row unless the query is made distinct
+     * (collection filters joined), then the distinct ids are selected.
+     */
+    private long countAtMost(ExpressionsSpecification<T> specification, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = cb.createQuery(Object.class);
+        Root<T> root = query.from(getDomainClass());
+
+        List<ParameterBinding> bindings = new ArrayList<>();
+        query.where(specification.toPredicate(root, query, cb, bindings));
+        query.select(query.isDistinct() ? root.get(entityInformation.getIdAttribute()) : cb.literal(1));
+
+        TypedQuery<Object> typedQuery = bindParameters(bindings, entityManager.createQuery(query));
+        return typedQuery.setMaxResults(limit).getResultList().size();
+    }
+
+    @Override
+    public <P> Page<P> findAll(Expressions expressions, Class<P> projection, Pageable pageable) {
+        Assert.notNull(projection, "projection must not be null!");
+        Assert.notNull(pageable, "pageable must not be null!");
+
+        List<String> properties = ExpressionsProjections.propertiesOf(projection, PROJECTION_FACTORY);
+
+        ExpressionsSpecification<T> specification = specificationOf(expressions, CollectionFilterMode.EXISTS);
+        if (specification.isUnsatisfiable()) {
+            return Page.empty(pageable);
+        }
+        return observe("projection", specification,
+                () -> findAll(specification, projection, properties, pageable));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private <P> Page<P> findAll(ExpressionsSpecification<T> specification, Class<P> projection,
+                                List<String> properties, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = (CriteriaQuery<Object>) (projection.isInterface() ?
+                cb.createTupleQuery() : cb.createQuery(projection));
+        Root<T> root = query.from(getDomainClass());
+
+        List<ParameterBinding> bindings = new ArrayList<>();
+        query.where(specification.toPredicate(root, query, cb, bindings));
+
+        Selection<?>[] selections = new Selection<?>[properties.size()];
+        for (int i = 0; i < selections.length; i++) {
+            String field = ExpressionsProjections.fieldOf(properties.get(i), getDomainClass());
+            Term term = ExpressionsPlan.compilePath(root.getModel(), field);
+            selections[i] = ExpressionsPredicateBuilder.getPath(root, term).alias(properties.get(i));
+        }
+        if (projection.isInterface()) {
+            query.multiselect(selections);
+        } else {
+            query.select(cb.construct((Class) projection, selections));
+        }
+
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<Object> typedQuery = bindParameters(bindings, entityManager.createQuery(query));
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+
+        List<P> content = new ArrayList<>();
+        for (Object result : typedQuery.getResultList()) {
+            if (result instanceof Tuple tuple) {
+                Map<String, Object> map = new HashMap<>();
+                for (int i = 0; i < properties.size(); i++) {
+                    map.put(properties.get(i), tuple.get(i));
+                }
+                content.add(PROJECTION_FACTORY.createProjection(projection, map));
+            } else {
+                content.add((P) result);
+            }
+        }
+
+        return pageable.isUnpaged() ? new PageImpl<>(content) :
+                PageableExecutionUtils.getPage(content, pageable, () -> count(specification));
+    }
+
+    @Override
+    public KeysetWindow<T> findAll(Expressions expressions, Sort sort, KeysetCursor cursor) {
+        Assert.notNull(sort, "sort must not be null!");
+        Assert.notNull(cursor, "cursor must not be null!");
+
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        if (specification.isUnsatisfiable()) {
+            return new KeysetWindow<>(Collections.emptyList(), null);
+        }
+        return observe("keyset", specification, () -> findAll(specification, sort, cursor));
+    }
+
+    private KeysetWindow<T> findAll(ExpressionsSpecification<T> specification, Sort sort, KeysetCursor cursor) {
+        List<Sort.Order> orders = withIdTiebreaker(sort).toList();
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(getDomainClass());
+
+        List<ParameterBinding> bindings = new ArrayList<>();
+        Predicate predicate = specification.toPredicate(root, query, cb, bindings);
+
+        List<Selection<?>> selections = new ArrayList<>(orders.size() + 1);
+        List<Path<?>> paths = new ArrayList<>(orders.size());
+        List<Class<?>> types = new ArrayList<>(orders.size());
+        List<Boolean> nullables = new ArrayList<>(orders.size());
+        List<Order> jpaOrders = new ArrayList<>(orders.size());
+        selections.add(root);
+
+        for (Sort.Order order : orders) {
+            Term term = ExpressionsPlan.compilePath(root.getModel(), order.getProperty());
+            Path<?> path = ExpressionsPredicateBuilder.getPath(root, term);
+            selections.add(path);
+            paths.add(path);
+            types.add(term.javaType);
+            boolean nullable = isNullable(term);
+            nullables.add(nullable);
+            if (nullable) {
+                // the nulls are ordered explicitly, as their native position differs between databases
+                jakarta.persistence.criteria.Expression<Integer> isNull =
+                        cb.<Integer>selectCase().when(cb.isNull(path), 1).otherwise(0);
+                jpaOrders.add(isNullsFirst(order) ? cb.desc(isNull) : cb.asc(isNull));
+            }
+            jpaOrders.add(order.isAscending() ? cb.asc(path) : cb.desc(path));
+        }
+
+        if (!cursor.isFirst()) {
+            predicate = cb.and(predicate,
+                    keysetPredicate(cb, orders, paths, nullables, cursor.getValues(types), bindings));
+        }
+        query.multiselect(selections).where(predicate).orderBy(jpaOrders);
+
+        TypedQuery<Tuple> typedQuery = bindParameters(bindings, entityManager.createQuery(query));
+        List<Tuple> tuples = typedQuery.setMaxResults(cursor.getSize() + 1).getResultList();
+
+        boolean hasNext = tuples.size() > cursor.getSize();
+        if (hasNext) {
+            tuples = tuples.subList(0, cursor.getSize());
+        }
+
+        List<T> content = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            content.add(tuple.get(0, getDomainClass()));
+        }
+
+        KeysetCursor nextCursor = null;
+        if (hasNext) {
+            Tuple last = tuples.get(tuples.size() - 1);
+            List<Object> values = new ArrayList<>(orders.size());
+            for (int i = 1; i <= orders.size(); i++) {
+                values.add(last.get(i));
+            }
+            nextCursor = KeysetCursor.after(values, cursor.getSize());
+        }
+        return new KeysetWindow<>(content, nextCursor);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<T> streamAll(Expressions expressions, Sort sort) {
+        ExpressionsSpecification<T> specification = specificationOf(expressions);
+        if (specification.isUnsatisfiable()) {
+            return Stream.empty();
+        }
+
+        ExpressionsConfig config = ExpressionsConfig.getInstance();
+        TypedQuery<T> query = getQuery(specification, sort)
+                .setHint(HINT_FETCH_SIZE, config.getStreamFetchSize())
+                .setHint(HINT_READ_ONLY, true);
+
+        Stream<T> stream = observeStream(specification, query::getResultStream);
+        int clearInterval = config.getStreamClearInterval();
+        if (clearInterval == 0) {
+            return stream;
+        }
+
+        Iterator<T> iterator = new ClearingIterator<>(stream.iterator(), entityManager, clearInterval);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(stream::close);
+    }
+
+    /**
+     * Instruments the query using {@link ExpressionsMetrics} if Micrometer is present.
+     */
+    private <R> R observe(String operation, ExpressionsSpecification<T> specification, Supplier<R> query) {
+        if (!MICROMETER_PRESENT || !ExpressionsMetrics.getInstance().isEnabled()) {
+            return query.get();
+        }
+        return ExpressionsMetrics.getInstance()
+                .observeQuery(getDomainClass(), operation, specification.getShapeFingerprint(), query);
+    }
+
+    /**
+     * Same as {@link #observe(String, ExpressionsSpecification, Supplier)}, but until the stream is closed.
+     */
+    private Stream<T> observeStream(ExpressionsSpecification<T> specification, Supplier<Stream<T>> query) {
+        if (!MICROMETER_PRESENT || !ExpressionsMetrics.getInstance().isEnabled()) {
+            return query.get();
+        }
+        return ExpressionsMetrics.getInstance()
+                .observeStream(getDomainClass(), specification.getShapeFingerprint(), query);
+    }
+
+    private Sort withIdTiebreaker(Sort sort) {
+        if (!hasSingleId()) {
+            return sort;
+        }
+        String id = entityInformation.getIdAttribute().getName();
+        return sort.getOrderFor(id) != null ? sort : sort.and(Sort.by(id));
+    }
+
+    /**
+     * Builds {@code (a, b, c) > (x, y, z)} as {@code a > x or (a = x and b > y) or (a = x and b = y and c > z)},
+     * where {@code >} becomes {@code <} for descending orders.
+     * <p>
+     * The nulls of the nullable properties are placed as ordered by the query, e.g. if the nulls are last,
+     * {@code a > x} becomes {@code (a > x or a is null)}, {@code a = x} becomes {@code a is null} if x is null,
+     * and nothing comes after a null value.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Predicate keysetPredicate(CriteriaBuilder cb, List<Sort.Order> orders, List<Path<?>> paths,
+                                             List<Boolean> nullables, List<Object> values,
+                                             List<ParameterBinding> bindings) {
+        List<Predicate> disjunctions = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            Predicate after = keysetAfter(cb, orders.get(i), paths.get(i), nullables.get(i), values.get(i), bindings);
+            if (after == null) {
+                continue;
+            }
+            Predicate[] conjunctions = new Predicate[i + 1];
+            for (int j = 0; j < i; j++) {
+                conjunctions[j] = values.get(j) == null ? cb.isNull(paths.get(j)) :
+                        cb.equal(paths.get(j), keysetParameter(cb, paths.get(j), values.get(j), bindings));
+            }
+            conjunctions[i] = after;
+            disjunctions.add(cb.and(conjunctions));
+        }
+        return disjunctions.isEmpty() ? cb.disjunction() : cb.or(disjunctions.toArray(new Predicate[0]));
+    }
+
+    /**
+     * @return the predicate of the values that come after the given value, or null if none does.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Predicate keysetAfter(CriteriaBuilder cb, Sort.Order order, Path<?> path, boolean nullable,
+                                         Object value, List<ParameterBinding> bindings) {
+        boolean nullsFirst = isNullsFirst(order);
+        if (value == null) {
+            return nullsFirst ? cb.isNotNull(path) : null;
+        }
+        jakarta.persistence.criteria.Expression expression = path;
+        jakarta.persistence.criteria.Expression parameter = keysetParameter(cb, path, value, bindings);
+        Predicate after = order.isAscending() ? cb.greaterThan(expression, parameter) : cb.lessThan(expression, parameter);
+        return nullable && !nullsFirst ? cb.or(after, cb.isNull(path)) : after;
+    }
+
+    /**
+     * The nulls are placed as requested by {@link Sort.NullHandling}, otherwise they are considered greater
+     * than the other values, i.e. last for the ascending orders, and first for the descending ones.
+     */
+    private static boolean isNullsFirst(Sort.Order order) {
+        return switch (order.getNullHandling()) {
+            case NULLS_FIRST -> true;
+            case NULLS_LAST -> false;
+            case NATIVE -> !order.isAscending();
+        };
+    }
+
+    /**
+     * @return false if neither the property nor the associations leading to it are optional.
+     */
+    private static boolean isNullable(Term term) {
+        for (ExpressionsPlan.Hop hop : term.hops) {
+            if (isOptional(hop.attribute())) {
+                return true;
+            }
+        }
+        return isOptional(term.attribute) || term.embedded != null && isOptional(term.embedded);
+    }
+
+    private static boolean isOptional(Attribute<?, ?> attribute) {
+        return !(attribute instanceof SingularAttribute<?, ?> singular) || singular.isOptional();
+    }
+
+    private static ParameterExpression<?> keysetParameter(CriteriaBuilder cb, Path<?> path, Object value,
+                                                          List<ParameterBinding> bindings) {
+        ParameterExpression<?> parameter = cb.parameter(ClassUtils.resolvePrimitiveIfNecessary(path.getJavaType()));
+        bindings.add(new ParameterBinding(parameter, value));
+        return parameter;
+    }
+
+    private static <T> ExpressionsSpecification<T> specificationOf(Expressions expressions) {
+        return specificationOf(expressions, null);
+    }
+
+    private static <T> ExpressionsSpecification<T> specificationOf(Expressions expressions,
+                                                                  CollectionFilterMode collectionFilterMode) {
+        return new ExpressionsSpecification<>(expressions, ExpressionsConfig.getInstance().isBindParameters(),
+                collectionFilterMode);
+    }
+
+    @Override
+    protected <S extends T> TypedQuery<S> getQuery(Specification<S> spec, Class<S> domainClass, Sort sort) {
+        if (spec instanceof ExpressionsSpecification<S> es) {
+            BoundSpecification<S> bound = new BoundSpecification<>(es);
+            return bindParameters(bound.bindings, super.getQuery(bound, domainClass, sort));
+        }
+        return super.getQuery(spec, domainClass, sort);
+    }
+
+    @Override
+    protected <S extends T> TypedQuery<Long> getCountQuery(Specification<S> spec, Class<S> domainClass) {
+        if (spec instanceof ExpressionsSpecification<S> es) {
+            BoundSpecification<S> bound = new BoundSpecification<>(es);
+            return bindParameters(bound.bindings, super.getCountQuery(bound, domainClass));
+        }
+        return super.getCountQuery(spec, domainClass);
     }
 
-    @RequiredArgsConstructor
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static <Q extends TypedQuery<?>> Q bindParameters(List<ParameterBinding> bindings, Q query) {
+        for (ParameterBinding binding : bindings) {
+            query.setParameter((Parameter) binding.parameter(), binding.value());
+        }
+        return query;
+    }
+
+    /**
+     * Detaches the entities returned by the stream every {@code clearInterval} elements, right before fetching
+     * the next one, so they can be garbage collected, while the other entities of the persistence context
+     * are kept. The persistence context is flushed first, so the changes made to the entities are not lost.
+     */
+    private static class ClearingIterator<T> implements Iterator<T> {
+
+        private final Iterator<T> delegate;
+        private final EntityManager entityManager;
+        private final int clearInterval;
+        private final List<T> returned;
+
+        ClearingIterator(Iterator<T> delegate, EntityManager entityManager, int clearInterval) {
+            this.delegate = delegate;
+            this.entityManager = entityManager;
+            this.clearInterval = clearInterval;
+            this.returned = new ArrayList<>(clearInterval);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (returned.size() == clearInterval) {
+                entityManager.flush();
+                returned.forEach(entityManager::detach);
+                returned.clear();
+            }
+            T next = delegate.next();
+            returned.add(next);
+            return next;
+        }
+    }
+
+    /**
+     * Builds the predicate of an {@link ExpressionsSpecification} for a single query, and collects the parameters
+     * to be bound on that query, so the specification itself holds no per query state.
+     */
+    private static final class BoundSpecification<T> implements Specification<T> {
+
+        private final ExpressionsSpecification<T> specification;
+        private final List<ParameterBinding> bindings = new ArrayList<>();
+
+        BoundSpecification(ExpressionsSpecification<T> specification) {
+            this.specification = specification;
+        }
+
+        @Override
+        public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+            bindings.clear();
+            return specification.toPredicate(root, query, cb, bindings);
+        }
+    }
+
+    /**
+     * Safe to be shared between threads, the values computed once (e.g. the optimized expressions) are immutable,
+     * and computing them twice concurrently is harmless.
+     */
     static class ExpressionsSpecification<T> implements Specification<T> {
 
         private final Expressions expressions;
+        private final boolean bindParameters;
+        private final CollectionFilterMode collectionFilterMode;
+        private volatile Prepared prepared;
+        private volatile String shapeFingerprint;
+        private volatile CheckedMode checkedMode;
+
+        /**
+         * Creates a specification that passes the values as literals to the criteria api,
+         * to be used when the caller owns the query.
+         */
+        ExpressionsSpecification(Expressions expressions) {
+            this(expressions, false, null);
+        }
 
+        /**
+         * @param bindParameters       if true, the values are bound by the {@link ExpressionsRepositoryImpl}
+         *                             on the query created for this specification, otherwise only the values
+         *                             that can't be passed as literals are (e.g. the arrays of
+         *                             {@link InListStrategy#array(String)}).
+         * @param collectionFilterMode overrides the collection filter mode of the expressions if not null.
+         */
+        ExpressionsSpecification(Expressions expressions, boolean bindParameters,
+                                 CollectionFilterMode collectionFilterMode) {
+            this.expressions = expressions;
+            this.bindParameters = bindParameters;
+            this.collectionFilterMode = collectionFilterMode;
+        }
+
+        /**
+         * Used when the query is created by the caller (e.g. a composed {@link Specification}),
+         * so the values are always passed as literals.
+         */
         @Override
         public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+            return toPredicate(root, query, cb, null);
+        }
+
+        /**
+         * @param bindings the list to add the parameters of the predicate to, to be bound on the query by the caller,
+         *                 or null if the query is created by the caller, so no parameter can be bound on it.
+         */
+        Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb,
+                              List<ParameterBinding> bindings) {
             logExpressions();
-            return ExpressionsPredicateBuilder.getPredicate(root, query, cb, expressions);
+            if (isUnsatisfiable()) {
+                return cb.disjunction();
+            }
+            CollectionFilterMode mode = getCollectionFilterMode(root.getModel());
+
+            JoinRegistry joins = new JoinRegistry();
+
+            if (MICROMETER_PRESENT && ExpressionsMetrics.getInstance().isEnabled()) {
+                return ExpressionsMetrics.getInstance().observePredicate(root, getExpressionList(), getShapeFingerprint(),
+                        joins, () -> ExpressionsPredicateBuilder.getPredicate(root, query, cb, getExpressionList(),
+                                bindings, bindParameters && bindings != null, mode, joins));
+            }
+            return ExpressionsPredicateBuilder.getPredicate(root, query, cb, getExpressionList(), bindings,
+                    bindParameters && bindings != null, mode, joins);
+        }
+
+        /**
+         * A low cardinality identifier of the fields and operators of the expressions, used to tag the metrics.
+         */
+        String getShapeFingerprint() {
+            String fingerprint = shapeFingerprint;
+            if (fingerprint == null) {
+                fingerprint = ExpressionsFingerprint.of(getExpressionList()).shapeHex();
+                shapeFingerprint = fingerprint;
+            }
+            return fingerprint;
+        }
+
+        /**
+         * @return true if the expressions can never match, so the query could be skipped altogether.
+         */
+        boolean isUnsatisfiable() {
+            return prepare().unsatisfiable();
+        }
+
+        /**
+         * Returns the expressions, optimized if enabled by {@link ExpressionsConfig#setOptimizeExpressions(boolean)},
+         * computed once and reused for both the select and the count queries.
+         *
+         * @throws IllegalArgumentException if the expressions exceed the limits of {@link ExpressionsLimits}.
+         */
+        private List<Expression> getExpressionList() {
+            return prepare().expressions();
+        }
+
+        private Prepared prepare() {
+            Prepared p = prepared;
+            if (p == null) {
+                List<Expression> list = expressions.getExpressions();
+                ExpressionsLimits.check(list);
+                boolean unsatisfiable = false;
+                if (ExpressionsConfig.getInstance().isOptimizeExpressions()) {
+                    ExpressionsOptimizer.Result result = ExpressionsOptimizer.optimize(list);
+                    list = result.expressions();
+                    unsatisfiable = result.unsatisfiable();
+                }
+                p = new Prepared(list, unsatisfiable);
+                prepared = p;
+            }
+            return p;
+        }
+
+        /**
+         * Returns the collection filter mode after checking the budget of the entity, which might downgrade it,
+         * computed once and reused for both the select and the count queries.
+         *
+         * @throws ExpressionsBudgetExceededException if the expressions exceed the budget of the entity.
+         */
+        private CollectionFilterMode getCollectionFilterMode(ManagedType<?> type) {
+            CheckedMode checked = checkedMode;
+            if (checked == null || checked.type() != type) {
+                checked = new CheckedMode(type, ExpressionsCostGuard.check(type, getExpressionList(),
+                        collectionFilterMode != null ? collectionFilterMode : expressions.getCollectionFilterMode()));
+                checkedMode = checked;
+            }
+            return checked.mode();
         }
 
         @SneakyThrows
@@ -76,5 +874,11 @@ public class ExpressionsRepositoryImpl<T, ID>
             }
             log.debug("expressions: {}", OBJECT_MAPPER_PRESENT ? ((ObjectMapper) OBJECT_MAPPER).writeValueAsString(expressions) : expressions);
         }
+
+        private record Prepared(List<Expression> expressions, boolean unsatisfiable) {
+        }
+
+        private record CheckedMode(ManagedType<?> type, CollectionFilterMode mode) {
+        }
     }
 }
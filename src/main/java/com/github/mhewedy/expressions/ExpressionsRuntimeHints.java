@@ -0,0 +1,31 @@
+package com.github.mhewedy.expressions;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Registers the reflection needed by the library in a native image, registered in {@code META-INF/spring/aot.factories}:
+ * <ul>
+ *     <li>{@link ExpressionsRepositoryImpl} is instantiated and invoked reflectively by Spring Data
+ *     as the repository base class.</li>
+ *     <li>{@link Expressions} is instantiated reflectively by Jackson when deserialized as a map,
+ *     and {@link KeysetWindow} along with its {@link KeysetCursor} are serialized by Jackson
+ *     when returned to the clients.</li>
+ *     <li>{@link Operator} constants are looked up by name.</li>
+ * </ul>
+ */
+class ExpressionsRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.reflection()
+                .registerType(ExpressionsRepositoryImpl.class,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(Expressions.class,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(KeysetWindow.class, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(KeysetCursor.class, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(Operator.class, MemberCategory.INVOKE_PUBLIC_METHODS, MemberCategory.DECLARED_FIELDS);
+    }
+}
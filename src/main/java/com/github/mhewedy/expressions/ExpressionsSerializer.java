@@ -0,0 +1,79 @@
+package com.github.mhewedy.expressions;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.temporal.Temporal;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the {@link Expressions} the same way they are read, the {@link Temporal} values of the java api
+ * are written as strings using the same format the values are parsed with (e.g. {@code 1390-09-29} for
+ * {@link java.time.chrono.HijrahDate}), regardless of the date and time support of the {@code ObjectMapper}.
+ *
+ * @see ExpressionsModule
+ */
+public class ExpressionsSerializer extends StdSerializer<Expressions> {
+
+    public ExpressionsSerializer() {
+        super(Expressions.class);
+    }
+
+    @Override
+    public void serialize(Expressions value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        write(value, gen, provider);
+    }
+
+    /**
+     * Writes the nested maps and lists using an explicit stack, so deep expressions can't overflow the call stack.
+     */
+    private void write(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        Deque<Container> stack = new ArrayDeque<>();
+        writeValue(value, gen, provider, stack);
+
+        while (!stack.isEmpty()) {
+            Container container = stack.peek();
+            if (!container.elements().hasNext()) {
+                stack.pop();
+                if (container.object()) {
+                    gen.writeEndObject();
+                } else {
+                    gen.writeEndArray();
+                }
+            } else if (container.object()) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) container.elements().next();
+                gen.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue(), gen, provider, stack);
+            } else {
+                writeValue(container.elements().next(), gen, provider, stack);
+            }
+        }
+    }
+
+    /**
+     * Writes the value, or starts it and pushes its elements if it's a map or a list.
+     */
+    private void writeValue(Object value, JsonGenerator gen, SerializerProvider provider, Deque<Container> stack)
+            throws IOException {
+        if (value instanceof Temporal temporal) {
+            gen.writeString(DateTimeUtil.format(temporal));
+        } else if (value instanceof Map<?, ?> map) {
+            gen.writeStartObject();
+            stack.push(new Container(map.entrySet().iterator(), true));
+        } else if (value instanceof List<?> list) {
+            gen.writeStartArray();
+            stack.push(new Container(list.iterator(), false));
+        } else {
+            provider.defaultSerializeValue(value, gen);
+        }
+    }
+
+    private record Container(Iterator<?> elements, boolean object) {
+    }
+}
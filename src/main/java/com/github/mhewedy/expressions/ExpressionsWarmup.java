@@ -0,0 +1,147 @@
+package com.github.mhewedy.expressions;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static jakarta.persistence.metamodel.Attribute.PersistentAttributeType;
+
+/**
+ * Resolves the fields of the entities of all the {@link ExpressionsRepository} repositories at the application startup,
+ * and optionally compiles the plans of the given "hot" expressions, so the first requests after a deploy
+ * don't pay for the metamodel lookups.
+ * <p>
+ * The warm-up is opt-in, by declaring it as a bean, example:
+ * <pre>
+ * &#64;Bean
+ * public ExpressionsWarmup expressionsWarmup() {
+ *     return new ExpressionsWarmup()
+ *             .fields(Employee.class, "department.name", "tasks.status")
+ *             .template(Employee.class, Expression.of("lastName", Operator.$eq, "").build());
+ * }
+ * </pre>
+ * Only the attributes of the entities themselves, the given fields and the fields of the templates are resolved,
+ * the associations are not followed, as the paths cached per entity are limited
+ * (see {@link FieldPath#MAXIMUM_SIZE_PER_TYPE}), and have to be left for the fields used by the requests.
+ */
+@Slf4j
+public class ExpressionsWarmup implements SmartInitializingSingleton, BeanFactoryAware {
+
+    private final Map<Class<?>, List<Expressions>> templates = new LinkedHashMap<>();
+    private final Map<Class<?>, List<String>> fields = new LinkedHashMap<>();
+    private ListableBeanFactory beanFactory;
+
+    /**
+     * Adds expressions to compile their plan at startup, only the fields and operators matter, not the values.
+     */
+    public ExpressionsWarmup template(Class<?> domainClass, Expressions expressions) {
+        Assert.notNull(domainClass, "domainClass must not be null!");
+        Assert.notNull(expressions, "expressions must not be null!");
+        templates.computeIfAbsent(domainClass, it -> new ArrayList<>()).add(expressions);
+        return this;
+    }
+
+    /**
+     * Adds fields to resolve at startup, in addition to the attributes of the entity itself,
+     * e.g. the fields of the associations ({@code department.name}).
+     */
+    public ExpressionsWarmup fields(Class<?> domainClass, String... fields) {
+        Assert.notNull(domainClass, "domainClass must not be null!");
+        Assert.noNullElements(fields, "fields must not contain null elements!");
+        this.fields.computeIfAbsent(domainClass, it -> new ArrayList<>()).addAll(Arrays.asList(fields));
+        return this;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        Assert.isInstanceOf(ListableBeanFactory.class, beanFactory);
+        this.beanFactory = (ListableBeanFactory) beanFactory;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.nanoTime();
+        Set<Class<?>> domainClasses = getDomainClasses();
+        int paths = 0, plans = 0;
+
+        for (EntityManagerFactory entityManagerFactory : beanFactory.getBeanProvider(EntityManagerFactory.class)) {
+            for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+                if (!domainClasses.contains(entity.getJavaType())) {
+                    continue;
+                }
+                paths += warmup(entity);
+                for (String field : fields.getOrDefault(entity.getJavaType(), List.of())) {
+                    FieldPath.of(entity, field);
+                    paths++;
+                }
+
+                for (Expressions expressions : templates.getOrDefault(entity.getJavaType(), List.of())) {
+                    compile(entity, expressions);
+                    plans++;
+                }
+            }
+        }
+
+        log.info("expressions warm-up resolved {} fields and compiled {} plans of {} entities in {} ms",
+                paths, plans, domainClasses.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Set<Class<?>> getDomainClasses() {
+        Set<Class<?>> domainClasses = new HashSet<>();
+        Repositories repositories = new Repositories(beanFactory);
+        for (Class<?> domainClass : repositories) {
+            repositories.getRepositoryInformationFor(domainClass)
+                    .filter(it -> ExpressionsRepository.class.isAssignableFrom(it.getRepositoryInterface()))
+                    .ifPresent(it -> domainClasses.add(domainClass));
+        }
+        return domainClasses;
+    }
+
+    /**
+     * Resolves the basic and the embedded attributes of the entity.
+     */
+    private static int warmup(EntityType<?> entity) {
+        int count = 0;
+        for (Attribute<?, ?> attribute : entity.getAttributes()) {
+            if (attribute.getPersistentAttributeType() == PersistentAttributeType.EMBEDDED) {
+                ManagedType<?> embeddable = (ManagedType<?>) ((SingularAttribute<?, ?>) attribute).getType();
+                for (Attribute<?, ?> embedded : embeddable.getAttributes()) {
+                    FieldPath.of(entity, attribute.getName() + "." + embedded.getName());
+                    count++;
+                }
+            } else if (attribute.getPersistentAttributeType() == PersistentAttributeType.BASIC) {
+                FieldPath.of(entity, attribute.getName());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void compile(EntityType<?> entity, Expressions expressions) {
+        List<Expression> list = expressions.getExpressions();
+        if (ExpressionsConfig.getInstance().isOptimizeExpressions()) {
+            list = ExpressionsOptimizer.optimize(list).expressions();
+        }
+        final List<Expression> expressionList = list;
+        String shape = ExpressionsPlan.shapeOf(expressionList, new ArrayList<>());
+        ExpressionsPlanCache.getInstance().get(entity, shape, () -> ExpressionsPlan.compile(entity, expressionList));
+    }
+}
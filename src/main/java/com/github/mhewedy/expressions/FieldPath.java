@@ -0,0 +1,175 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.ExpressionsPlan.Hop;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static jakarta.persistence.metamodel.Attribute.PersistentAttributeType;
+
+/**
+ * The resolved metadata of a field of the expressions (e.g. {@code <department.city.name} or {@code name.ar}),
+ * made of the association hops from the entity, the target attribute, its java type and the converter of the values.
+ * <p>
+ * Field paths are parsed and resolved against the metamodel once per entity type, then cached,
+ * so compiling the plans of the different shapes that use the same field is a single map lookup.
+ */
+final class FieldPath {
+
+    /**
+     * Maximum number of cached paths per entity type, as the field names come from the user input,
+     * and associations could be cyclic (e.g. {@code department.employees.department...}).
+     */
+    static final int MAXIMUM_SIZE_PER_TYPE = 1000;
+
+    private static final Map<ManagedType<?>, Map<String, FieldPath>> CACHE = new ConcurrentHashMap<>();
+
+    final Hop[] hops;
+    final int pluralHop;    // index of the first collection hop, or -1
+    final Attribute<?, ?> attribute;
+    final Attribute<?, ?> embedded;
+    final boolean distinct;
+    final Class<?> javaType;
+    final boolean caseInsensitive;      // see CaseInsensitive
+    final Attribute<?, ?> normalized;   // the CaseInsensitive#normalizedBy attribute, or null
+    final TypeConverter converter;
+
+    private FieldPath(Hop[] hops, int pluralHop, Attribute<?, ?> attribute, Attribute<?, ?> embedded,
+                      boolean distinct, boolean caseInsensitive, Attribute<?, ?> normalized) {
+        this.hops = hops;
+        this.pluralHop = pluralHop;
+        this.attribute = attribute;
+        this.embedded = embedded;
+        this.distinct = distinct;
+        this.javaType = (embedded != null ? embedded : attribute).getJavaType();
+        this.caseInsensitive = caseInsensitive;
+        this.normalized = normalized;
+        this.converter = TypeConverter.of(javaType);
+    }
+
+    /**
+     * Returns the cached path of the field on the given type, or resolve and cache it.
+     *
+     * @throws IllegalArgumentException if the field doesn't exist, such fields are not cached.
+     */
+    static FieldPath of(ManagedType<?> type, String field) {
+        Map<String, FieldPath> paths = CACHE.computeIfAbsent(type, it -> new ConcurrentHashMap<>());
+        FieldPath path = paths.get(field);
+        if (path == null) {
+            path = resolve(type, field);
+            if (paths.size() < MAXIMUM_SIZE_PER_TYPE) {
+                paths.put(field, path);
+            }
+        }
+        return path;
+    }
+
+    static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * @return the number of the cached paths of the given type.
+     */
+    static int size(ManagedType<?> type) {
+        Map<String, FieldPath> paths = CACHE.get(type);
+        return paths == null ? 0 : paths.size();
+    }
+
+    private static FieldPath resolve(ManagedType<?> type, String field) {
+        List<Hop> hops = new ArrayList<>(2);
+        boolean distinct = false;
+        int pluralHop = -1;
+
+        while (true) {
+            final int dot = field.indexOf('.');
+            final String name = dot < 0 ? field : nameOf(field, dot);
+            final String subField = dot < 0 ? "" : field.substring(dot + 1);
+            Attribute<?, ?> attribute = getAttribute(type, name);
+
+            if (attribute.isAssociation()) {
+                if (attribute instanceof PluralAttribute) {
+                    distinct = true;
+                }
+
+                if (!subField.isEmpty()) {
+                    if (attribute instanceof PluralAttribute && pluralHop < 0) {
+                        pluralHop = hops.size();
+                    }
+                    hops.add(new Hop(attribute, name, joinTypeOf(field, dot)));
+                    type = extractSubFieldType(attribute);
+                    field = subField;
+                    continue;
+                }
+            }
+
+            Attribute<?, ?> embedded = null;
+            if (PersistentAttributeType.EMBEDDED == attribute.getPersistentAttributeType()) {
+                type = extractSubFieldType(attribute);
+                embedded = type.getAttribute(subField);
+            }
+
+            Member member = (embedded != null ? embedded : attribute).getJavaMember();
+            CaseInsensitive caseInsensitive = member instanceof AnnotatedElement element ?
+                    element.getAnnotation(CaseInsensitive.class) : null;
+            Attribute<?, ?> normalized = caseInsensitive == null || caseInsensitive.normalizedBy().isEmpty() ? null :
+                    getAttribute(type, caseInsensitive.normalizedBy());
+
+            return new FieldPath(hops.toArray(new Hop[0]), pluralHop, attribute, embedded, distinct,
+                    caseInsensitive != null, normalized);
+        }
+    }
+
+    /**
+     * Returns the first segment without the '<' and '>' at start (left/right join indicators)
+     * and the '?' at end (left join indicator - optional chaining operator).
+     */
+    private static String nameOf(String field, int dot) {
+        int start = 0;
+        while (start < dot && (field.charAt(start) == '<' || field.charAt(start) == '>')) {
+            start++;
+        }
+        int end = dot;
+        if (end > start && field.charAt(end - 1) == '?') {
+            end--;
+        }
+        return field.substring(start, end);
+    }
+
+    private static JoinType joinTypeOf(String field, int dot) {
+        char first = field.charAt(0);
+        return first == '<' || field.charAt(dot - 1) == '?' ? JoinType.LEFT // <abc or abc?
+                : first == '>' ? JoinType.RIGHT // >abc
+                : JoinType.INNER;   // abc
+    }
+
+    private static Attribute<?, ?> getAttribute(ManagedType<?> type, String field) {
+        try {
+            return type.getAttribute(field);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Unable to locate attribute with the given name [%s] on this ManagedType [%s]," +
+                                    " Are you sure this ManagedType or one of its ancestors contains such attribute?",
+                            field,
+                            type.getJavaType().getName()
+                    )
+            );
+        }
+    }
+
+    @SuppressWarnings({"rawtypes"})
+    private static ManagedType<?> extractSubFieldType(Attribute<?, ?> attribute) {
+        return (ManagedType<?>) (attribute.isCollection() ? ((PluralAttribute) attribute).getElementType() :
+                (((SingularAttribute) attribute).getType()));
+    }
+}
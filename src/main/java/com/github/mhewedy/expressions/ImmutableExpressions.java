@@ -0,0 +1,378 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.Expression.AndExpression;
+import com.github.mhewedy.expressions.Expression.ListExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+import com.github.mhewedy.expressions.Expression.SingularExpression;
+import org.springframework.util.Assert;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable counterpart of {@link Expressions} that composes in constant time,
+ * as {@link #and(ImmutableExpressions)} and {@link #or(ImmutableExpressions)} share both operands
+ * instead of copying them.
+ * <p>
+ * Instances are safe to be shared between threads and can be used as cache keys, example:
+ * <pre>
+ * static final ImmutableExpressions ACTIVE = ImmutableExpressions.of(Expression.of("active", Operator.$eq, true));
+ *
+ * ImmutableExpressions filter = ImmutableExpressions.builder()
+ *         .and(tenantFilter)
+ *         .and(ACTIVE)
+ *         .and(ImmutableExpressions.of(userExpressions))
+ *         .build();
+ *
+ * employeeRepository.findAll(filter.toExpressions(), pageable);
+ * </pre>
+ */
+public final class ImmutableExpressions {
+
+    /**
+     * Matches everything, it is the identity of {@link #and(ImmutableExpressions)}.
+     */
+    public static final ImmutableExpressions EMPTY = new ImmutableExpressions(null, false, Collections.emptyList());
+
+    private static final Object GROUP_END = new Object();
+
+    private final Expression leaf;
+    private final boolean or;
+    private final List<ImmutableExpressions> children;
+
+    private volatile List<Expression> expressions;
+    private volatile ExpressionsFingerprint fingerprint;
+    private int hash;
+
+    private ImmutableExpressions(Expression leaf, boolean or, List<ImmutableExpressions> children) {
+        this.leaf = leaf;
+        this.or = or;
+        this.children = children;
+    }
+
+    /**
+     * Creates immutable expressions out of a copy of the expression.
+     */
+    public static ImmutableExpressions of(Expression expression) {
+        Assert.notNull(expression, "expression must not be null!");
+        return new ImmutableExpressions(copyOf(expression), false, null);
+    }
+
+    /**
+     * Creates immutable expressions out of a snapshot of the expressions,
+     * later changes to the expressions are not reflected.
+     */
+    public static ImmutableExpressions of(Expressions expressions) {
+        Assert.notNull(expressions, "expressions must not be null!");
+        List<Expression> list = expressions.getExpressions();
+        List<ImmutableExpressions> children = new ArrayList<>(list.size());
+        for (Expression expression : list) {
+            children.add(of(expression));
+        }
+        return children.size() == 1 ? children.get(0) :
+                new ImmutableExpressions(null, false, Collections.unmodifiableList(children));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public ImmutableExpressions and(ImmutableExpressions other) {
+        Assert.notNull(other, "other must not be null!");
+        if (this == EMPTY) {
+            return other;
+        }
+        if (other == EMPTY) {
+            return this;
+        }
+        return new ImmutableExpressions(null, false, List.of(this, other));
+    }
+
+    public ImmutableExpressions and(Expression expression) {
+        return and(of(expression));
+    }
+
+    public ImmutableExpressions or(ImmutableExpressions other) {
+        Assert.notNull(other, "other must not be null!");
+        return new ImmutableExpressions(null, true, List.of(this, other));
+    }
+
+    public ImmutableExpressions or(Expression expression) {
+        return or(of(expression));
+    }
+
+    /**
+     * Converts into {@link Expressions} to be used by the {@link ExpressionsRepository},
+     * the returned object is backed by the shared expressions tree, so its map entries are only
+     * materialized if accessed.
+     */
+    public Expressions toExpressions() {
+        return Expressions.of(getExpressions());
+    }
+
+    /**
+     * Returns the fingerprint of the expressions, computed once as the expressions never change.
+     */
+    public ExpressionsFingerprint fingerprint() {
+        ExpressionsFingerprint f = fingerprint;
+        if (f == null) {
+            f = ExpressionsFingerprint.of(getExpressions());
+            fingerprint = f;
+        }
+        return f;
+    }
+
+    /**
+     * Returns the top level expressions (implicitly "and"ed), where the nested groups of the same kind are flattened.
+     */
+    List<Expression> getExpressions() {
+        List<Expression> list = expressions;
+        if (list == null) {
+            if (leaf != null) {
+                list = List.of(leaf);
+            } else if (or) {
+                list = List.of(toExpression(this));
+            } else {
+                List<Expression> top = new ArrayList<>();
+                for (ImmutableExpressions child : flatten(this)) {
+                    top.add(toExpression(child));
+                }
+                list = Collections.unmodifiableList(top);
+            }
+            expressions = list;
+        }
+        return list;
+    }
+
+    /**
+     * Converts the node using an explicit stack, each group is added to its parent before its own members,
+     * so the order is kept.
+     */
+    private static Expression toExpression(ImmutableExpressions node) {
+        if (node.leaf != null) {
+            return node.leaf;
+        }
+        Expression expression = node.or ? new OrExpression() : new AndExpression();
+        Deque<Conversion> stack = new ArrayDeque<>();
+        stack.push(new Conversion(node, expression));
+        while (!stack.isEmpty()) {
+            Conversion conversion = stack.pop();
+            for (ImmutableExpressions member : flatten(conversion.node())) {
+                if (member.leaf != null) {
+                    add(conversion.group(), member.leaf);
+                } else {
+                    Expression group = member.or ? new OrExpression() : new AndExpression();
+                    add(conversion.group(), group);
+                    stack.push(new Conversion(member, group));
+                }
+            }
+        }
+        return expression;
+    }
+
+    /**
+     * Returns the children of the junction in order, looking through the nested junctions of the same kind
+     * without recursion, as composing in a loop builds deep trees.
+     */
+    private static List<ImmutableExpressions> flatten(ImmutableExpressions junction) {
+        List<ImmutableExpressions> list = new ArrayList<>();
+        Deque<ImmutableExpressions> stack = new ArrayDeque<>();
+        stack.push(junction);
+        while (!stack.isEmpty()) {
+            ImmutableExpressions node = stack.pop();
+            if (node.leaf == null && node.or == junction.or) {
+                for (int i = node.children.size() - 1; i >= 0; i--) {
+                    stack.push(node.children.get(i));
+                }
+            } else {
+                list.add(node);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Copies the expression using an explicit stack, each group is added to its parent before its own members,
+     * so the order is kept.
+     */
+    private static Expression copyOf(Expression expression) {
+        Expression copy = shallowCopyOf(expression);
+        Deque<Copy> stack = new ArrayDeque<>();
+        stack.push(new Copy(expression, copy));
+        while (!stack.isEmpty()) {
+            Copy pending = stack.pop();
+            List<Expression> children = childrenOf(pending.source());
+            if (children == null) {
+                continue;
+            }
+            for (Expression child : children) {
+                Expression childCopy = shallowCopyOf(child);
+                add(pending.copy(), childCopy);
+                stack.push(new Copy(child, childCopy));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the leaves, and creates empty groups of the same kind for the groups.
+     */
+    private static Expression shallowCopyOf(Expression expression) {
+        if (expression instanceof SingularExpression se) {
+            return se;  // immutable
+        }
+        if (expression instanceof ListExpression le) {
+            List<Object> values = le.values instanceof PrimitiveList ? le.values :    // already immutable
+                    Collections.unmodifiableList(new ArrayList<>(le.values));
+            return new ListExpression(le.field, le.operator, values);
+        }
+        return expression instanceof OrExpression ? new OrExpression() : new AndExpression();
+    }
+
+    private static List<Expression> childrenOf(Expression expression) {
+        return expression instanceof AndExpression and ? and.expressions :
+                expression instanceof OrExpression or ? or.expressions : null;
+    }
+
+    private static void add(Expression group, Expression member) {
+        if (group instanceof OrExpression or) {
+            or.add(member);
+        } else {
+            ((AndExpression) group).add(member);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImmutableExpressions other) || hashCode() != other.hashCode()) {
+            return false;
+        }
+        return equals(getExpressions(), other.getExpressions());
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = hashCode(getExpressions());
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Compares the trees using an explicit stack of the groups to compare.
+     */
+    private static boolean equals(List<Expression> a, List<Expression> b) {
+        Deque<List<Expression>> stack = new ArrayDeque<>();
+        stack.push(a);
+        stack.push(b);
+        while (!stack.isEmpty()) {
+            List<Expression> y = stack.pop(), x = stack.pop();
+            if (x.size() != y.size()) {
+                return false;
+            }
+            for (int i = 0; i < x.size(); i++) {
+                Expression u = x.get(i), v = y.get(i);
+                if (u instanceof SingularExpression s1 && v instanceof SingularExpression s2) {
+                    if (!s1.field.equals(s2.field) || s1.operator != s2.operator || !Objects.equals(s1.value, s2.value)) {
+                        return false;
+                    }
+                } else if (u instanceof ListExpression l1 && v instanceof ListExpression l2) {
+                    if (!l1.field.equals(l2.field) || l1.operator != l2.operator || !l1.values.equals(l2.values)) {
+                        return false;
+                    }
+                } else if (u instanceof OrExpression o1 && v instanceof OrExpression o2) {
+                    stack.push(o1.expressions);
+                    stack.push(o2.expressions);
+                } else if (u instanceof AndExpression a1 && v instanceof AndExpression a2) {
+                    stack.push(a1.expressions);
+                    stack.push(a2.expressions);
+                } else {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the tree in pre-order using an explicit stack, where each group contributes a start
+     * and an end marker, so the structure is part of the hash.
+     */
+    private static int hashCode(List<Expression> expressions) {
+        int h = 1;
+        Deque<Object> stack = new ArrayDeque<>();
+        pushAll(expressions, stack);
+        while (!stack.isEmpty()) {
+            Object node = stack.pop();
+            if (node == GROUP_END) {
+                h = 31 * h + 3;
+            } else if (node instanceof SingularExpression se) {
+                h = 31 * h + Objects.hash(se.field, se.operator, se.value);
+            } else if (node instanceof ListExpression le) {
+                h = 31 * h + Objects.hash(le.field, le.operator, le.values);
+            } else {
+                h = 31 * h + (node instanceof OrExpression ? 1 : 2);
+                stack.push(GROUP_END);
+                pushAll(childrenOf((Expression) node), stack);
+            }
+        }
+        return h;
+    }
+
+    private static void pushAll(List<Expression> expressions, Deque<Object> stack) {
+        for (int i = expressions.size() - 1; i >= 0; i--) {
+            stack.push(expressions.get(i));
+        }
+    }
+
+    private record Conversion(ImmutableExpressions node, Expression group) {
+    }
+
+    private record Copy(Expression source, Expression copy) {
+    }
+
+    @Override
+    public String toString() {
+        return "ImmutableExpressions(" + getExpressions() + ")";
+    }
+
+    /**
+     * Accumulates the "and"ed expressions into a single group.
+     */
+    public static final class Builder {
+
+        private final List<ImmutableExpressions> children = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder and(ImmutableExpressions expressions) {
+            Assert.notNull(expressions, "expressions must not be null!");
+            if (expressions != EMPTY) {
+                children.add(expressions);
+            }
+            return this;
+        }
+
+        public Builder and(Expression expression) {
+            return and(of(expression));
+        }
+
+        public ImmutableExpressions build() {
+            if (children.isEmpty()) {
+                return EMPTY;
+            }
+            return children.size() == 1 ? children.get(0) :
+                    new ImmutableExpressions(null, false, List.copyOf(children));
+        }
+    }
+}
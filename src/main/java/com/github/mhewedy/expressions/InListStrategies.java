@@ -0,0 +1,120 @@
+package com.github.mhewedy.expressions;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Array;
+import java.util.List;
+
+/**
+ * The built-in {@link InListStrategy} implementations.
+ */
+final class InListStrategies {
+
+    static final InListStrategy INDIVIDUAL = context -> in(context, context.getValues(), false);
+
+    static final InListStrategy PADDED = context -> in(context, context.getValues(), true);
+
+    private InListStrategies() {
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Predicate in(InListStrategy.Context context, List<Object> values, boolean padded) {
+        CriteriaBuilder.In<Object> in = context.getCriteriaBuilder().in(context.getPath());
+        Class type = context.getJavaType();
+        for (Object value : values) {
+            in.value(context.valueOf(type, value));
+        }
+        if (padded && !values.isEmpty()) {
+            Object last = values.get(values.size() - 1);
+            for (int i = values.size(); i < paddedSize(values.size()); i++) {
+                in.value(context.valueOf(type, last));
+            }
+        }
+        return in;
+    }
+
+    /**
+     * @return the next power of two.
+     */
+    static int paddedSize(int size) {
+        return size <= 1 ? size : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    static final class Chunked implements InListStrategy {
+
+        private final int chunkSize;
+
+        Chunked(int chunkSize) {
+            Assert.isTrue(chunkSize > 0, "chunkSize must be greater than zero!");
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public Predicate in(Context context) {
+            List<Object> values = context.getValues();
+            if (values.size() <= chunkSize) {
+                return chunk(context, values);
+            }
+            Predicate[] chunks = new Predicate[(values.size() + chunkSize - 1) / chunkSize];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = chunk(context, values.subList(i * chunkSize, Math.min(values.size(), (i + 1) * chunkSize)));
+            }
+            return context.getCriteriaBuilder().or(chunks);
+        }
+
+        private Predicate chunk(Context context, List<Object> values) {
+            // the padding must not exceed the chunk size
+            return InListStrategies.in(context, values, paddedSize(values.size()) <= chunkSize);
+        }
+    }
+
+    static final class ArrayParameter implements InListStrategy {
+
+        private final String function;
+
+        ArrayParameter(String function) {
+            Assert.hasText(function, "function must not be empty!");
+            this.function = function;
+        }
+
+        @Override
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        public Predicate in(Context context) {
+            if (!context.canBindParameters()) {
+                return INDIVIDUAL.in(context);
+            }
+            List<Object> values = context.getValues();
+            Object array = Array.newInstance(ClassUtils.resolvePrimitiveIfNecessary(context.getJavaType()), values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Array.set(array, i, values.get(i));
+            }
+            CriteriaBuilder cb = context.getCriteriaBuilder();
+            return cb.isTrue(cb.function(function, Boolean.class,
+                    context.parameterOf((Class) array.getClass(), array), context.getPath()));
+        }
+    }
+
+    static final class BySize implements InListStrategy {
+
+        private final int threshold;
+        private final InListStrategy small;
+        private final InListStrategy large;
+
+        BySize(int threshold, InListStrategy small, InListStrategy large) {
+            Assert.isTrue(threshold >= 0, "threshold must not be negative!");
+            Assert.notNull(small, "small must not be null!");
+            Assert.notNull(large, "large must not be null!");
+            this.threshold = threshold;
+            this.small = small;
+            this.large = large;
+        }
+
+        @Override
+        public Predicate in(Context context) {
+            return (context.getValues().size() <= threshold ? small : large).in(context);
+        }
+    }
+}
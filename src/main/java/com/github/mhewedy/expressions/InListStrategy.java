@@ -0,0 +1,120 @@
+package com.github.mhewedy.expressions;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+
+import java.util.List;
+
+/**
+ * Renders the {@code $in} and {@code $nin} lists ({@code $nin} is the negation of the rendered predicate).
+ * <p>
+ * Large lists (e.g. thousands of ids) render huge statements, with a different SQL per list size,
+ * which fills the statement caches and could exceed the maximum number of parameters of the database.
+ * The built-in strategies can be combined by list size, example:
+ * <pre>
+ * ExpressionsConfig.getInstance().setInListStrategy(
+ *         InListStrategy.bySize(1000, InListStrategy.padded(), InListStrategy.chunked(1000)));
+ * </pre>
+ * Or a custom strategy could be used, e.g. to join the values from a temporary table, or to use
+ * a database specific syntax.
+ *
+ * @see ExpressionsConfig#setInListStrategy(InListStrategy)
+ */
+@FunctionalInterface
+public interface InListStrategy {
+
+    Predicate in(Context context);
+
+    /**
+     * A parameter (or a literal if the values are not bound as parameters) per value, this is the default:
+     * <pre>
+     * e.id in (?, ?, ?)
+     * </pre>
+     */
+    static InListStrategy individual() {
+        return InListStrategies.INDIVIDUAL;
+    }
+
+    /**
+     * Same as {@link #individual()}, but pads the list to the next power of two by repeating its last value,
+     * so lists of different sizes share the same few SQL statements, e.g. a list of 5 values is rendered as:
+     * <pre>
+     * e.id in (?, ?, ?, ?, ?, ?, ?, ?)
+     * </pre>
+     */
+    static InListStrategy padded() {
+        return InListStrategies.PADDED;
+    }
+
+    /**
+     * Splits the list into padded chunks of at most {@code chunkSize} values, to stay below the limits of the
+     * database (e.g. Oracle accepts up to 1000 values per list):
+     * <pre>
+     * (e.id in (?, ?, ..., ?) or e.id in (?, ?, ..., ?))
+     * </pre>
+     */
+    static InListStrategy chunked(int chunkSize) {
+        return new InListStrategies.Chunked(chunkSize);
+    }
+
+    /**
+     * Binds the whole list as a single array parameter, passed along with the path to the given boolean function,
+     * which keeps the SQL the same for all list sizes, the array is always bound as a parameter,
+     * regardless of {@link ExpressionsConfig#setBindParameters(boolean)}:
+     * <pre>
+     * array_contains(?, e.id)
+     * </pre>
+     * The function is database specific, e.g. {@code array_contains} on H2. On databases that use
+     * {@code e.id = any(?)} instead, a function with the same arguments has to be registered to the persistence provider.
+     * <p>
+     * Falls back to {@link #individual()} on the queries created by the caller, e.g. {@link Expressions#getSpecification()}
+     * passed to a plain {@code JpaSpecificationExecutor}, as the array can't be bound on them.
+     */
+    static InListStrategy array(String function) {
+        return new InListStrategies.ArrayParameter(function);
+    }
+
+    /**
+     * Uses {@code small} for lists up to {@code threshold} values, and {@code large} for the bigger lists.
+     */
+    static InListStrategy bySize(int threshold, InListStrategy small, InListStrategy large) {
+        return new InListStrategies.BySize(threshold, small, large);
+    }
+
+    /**
+     * The list to render.
+     */
+    interface Context {
+
+        CriteriaBuilder getCriteriaBuilder();
+
+        Path<?> getPath();
+
+        /**
+         * @return the java type of the path, the values are already converted to.
+         */
+        Class<?> getJavaType();
+
+        List<Object> getValues();
+
+        /**
+         * @return a parameter bound to the value on the query,
+         * or a literal if the values are not bound as parameters.
+         */
+        <V> jakarta.persistence.criteria.Expression<V> valueOf(Class<V> type, Object value);
+
+        /**
+         * @return a parameter bound to the value on the query, even if the other values are passed as literals,
+         * for the values that can't be rendered as literals (e.g. arrays).
+         * @throws IllegalStateException if the query is created by the caller, see {@link #canBindParameters()}.
+         */
+        <V> jakarta.persistence.criteria.Expression<V> parameterOf(Class<V> type, Object value);
+
+        /**
+         * @return false if the query is created by the caller (e.g. {@link Expressions#getSpecification()}
+         * composed into another specification), so no parameter can be bound on it.
+         */
+        boolean canBindParameters();
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.ExpressionsPlan.Hop;
+import jakarta.persistence.criteria.Fetch;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.metamodel.Attribute;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Index of the joins of a single query, keyed by the parent path, the attribute and the join type,
+ * so reusing a join is a map lookup instead of a scan over the joins of the parent,
+ * and joins of different types on the same association (e.g. {@code <department.name} and {@code department.id})
+ * are kept separate.
+ * <p>
+ * The joins and fetch joins already created on a parent (e.g. by another specification or by {@link ExpressionsFetch})
+ * are indexed the first time the parent is seen, so the fetch joins of singular associations are reused to filter on.
+ */
+final class JoinRegistry {
+
+    private final Map<From<?, ?>, Map<JoinKey, Join<?, ?>>> joins = new IdentityHashMap<>();
+    private int createdCount;
+
+    /**
+     * Returns the join of the parent on the hop attribute with the same join type, or create a new one.
+     */
+    From<?, ?> join(From<?, ?> parent, Hop hop) {
+        Map<JoinKey, Join<?, ?>> parentJoins = joinsOf(parent);
+        JoinKey key = new JoinKey(hop.attribute(), hop.joinType());
+        Join<?, ?> join = parentJoins.get(key);
+        if (join == null) {
+            join = parent.join(hop.name(), hop.joinType());
+            parentJoins.put(key, join);
+            createdCount++;
+        }
+        return join;
+    }
+
+    /**
+     * Same as {@link #join(From, Hop)}, but falls back to a join of any type on the hop attribute,
+     * or else to a new left join (as {@code QueryUtils.toOrders} of spring data does),
+     * used to sort or select by a path without changing the rows matched by the predicate.
+     */
+    From<?, ?> joinForPath(From<?, ?> parent, Hop hop) {
+        Map<JoinKey, Join<?, ?>> parentJoins = joinsOf(parent);
+        Join<?, ?> join = parentJoins.get(new JoinKey(hop.attribute(), hop.joinType()));
+        if (join != null) {
+            return join;
+        }
+        for (Map.Entry<JoinKey, Join<?, ?>> entry : parentJoins.entrySet()) {
+            if (entry.getKey().attribute() == hop.attribute()) {
+                return entry.getValue();
+            }
+        }
+        return join(parent, new Hop(hop.attribute(), hop.name(), JoinType.LEFT));
+    }
+
+    /**
+     * @return the number of joins created by this registry.
+     */
+    int getCreatedCount() {
+        return createdCount;
+    }
+
+    private Map<JoinKey, Join<?, ?>> joinsOf(From<?, ?> parent) {
+        Map<JoinKey, Join<?, ?>> parentJoins = joins.get(parent);
+        if (parentJoins == null) {
+            parentJoins = new HashMap<>();
+            for (Fetch<?, ?> fetch : parent.getFetches()) {
+                // fetch joins are joins in hibernate, fetched collections are not filtered on, so they stay complete
+                if (fetch instanceof Join<?, ?> join && !join.getAttribute().isCollection()) {
+                    parentJoins.putIfAbsent(new JoinKey(join.getAttribute(), join.getJoinType()), join);
+                }
+            }
+            for (Join<?, ?> join : parent.getJoins()) {
+                parentJoins.putIfAbsent(new JoinKey(join.getAttribute(), join.getJoinType()), join);
+            }
+            joins.put(parent, parentJoins);
+        }
+        return parentJoins;
+    }
+
+    private record JoinKey(Attribute<?, ?> attribute, JoinType joinType) {
+    }
+}
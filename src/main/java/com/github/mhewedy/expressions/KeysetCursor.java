@@ -0,0 +1,166 @@
+package com.github.mhewedy.expressions;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.NumberUtils;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents the position and the size of a window to be fetched by
+ * {@link ExpressionsRepository#findAll(Expressions, org.springframework.data.domain.Sort, KeysetCursor)}.
+ * <p>
+ * The position is exchanged with the clients as an opaque token, example:
+ * <pre>
+ * KeysetWindow&lt;Employee&gt; window = employeeRepository.findAll(expressions, sort, KeysetCursor.of(token, 20));
+ * // send window.getContent() along with window.getNextCursor().getToken() to the client,
+ * // so it can ask for the next window.
+ * </pre>
+ */
+public final class KeysetCursor {
+
+    private final List<String> values;
+    private final int size;
+
+    private KeysetCursor(List<String> values, int size) {
+        Assert.isTrue(size > 0, "size must be greater than zero!");
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Creates a cursor for the first window.
+     */
+    public static KeysetCursor first(int size) {
+        return new KeysetCursor(Collections.emptyList(), size);
+    }
+
+    /**
+     * Creates a cursor for the window after the position represented by the token,
+     * or for the first window if the token is empty.
+     *
+     * @param token as returned by {@link #getToken()}
+     */
+    public static KeysetCursor of(String token, int size) {
+        if (!StringUtils.hasText(token)) {
+            return first(size);
+        }
+        return new KeysetCursor(decode(token), size);
+    }
+
+    static KeysetCursor after(List<Object> values, int size) {
+        List<String> formatted = new ArrayList<>(values.size());
+        for (Object value : values) {
+            formatted.add(format(value));
+        }
+        return new KeysetCursor(formatted, size);
+    }
+
+    /**
+     * @return the opaque position token, or null for the first window.
+     */
+    public String getToken() {
+        return isFirst() ? null : encode(values);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isFirst() {
+        return values.isEmpty();
+    }
+
+    /**
+     * Returns the values of the position converted to the types of the sort properties.
+     */
+    List<Object> getValues(List<Class<?>> types) {
+        if (values.size() != types.size()) {
+            throw new IllegalArgumentException(
+                    String.format("cursor has %d values while the sort has %d properties", values.size(), types.size())
+            );
+        }
+        List<Object> list = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            list.add(parse(values.get(i), types.get(i)));
+        }
+        return list;
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Enum<?> e) {
+            return e.name();
+        }
+        if (value instanceof Temporal t) {
+            return DateTimeUtil.format(t);
+        }
+        return value.toString();
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Object parse(String text, Class<?> type) {
+        if (text == null) {
+            return null;
+        }
+        type = ClassUtils.resolvePrimitiveIfNecessary(type);
+        if (Number.class.isAssignableFrom(type)) {
+            return NumberUtils.parseNumber(text, (Class) type);
+        }
+        if (type.equals(Boolean.class)) {
+            return Boolean.valueOf(text);
+        }
+        return TypeConverter.of(type).convert(text);
+    }
+
+    /**
+     * Encodes the values as length-prefixed strings, and the nulls as {@code ~},
+     * e.g. {@code 3:abc~10:2020-10-10}, then as url-safe base64.
+     */
+    private static String encode(List<String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (value == null) {
+                sb.append('~');
+            } else {
+                sb.append(value.length()).append(':').append(value);
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> decode(String token) {
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            List<String> values = new ArrayList<>();
+            int i = 0;
+            while (i < text.length()) {
+                if (text.charAt(i) == '~') {
+                    values.add(null);
+                    i++;
+                    continue;
+                }
+                int colon = text.indexOf(':', i);
+                int length = Integer.parseInt(text.substring(i, colon));
+                values.add(text.substring(colon + 1, colon + 1 + length));
+                i = colon + 1 + length;
+            }
+            return values;
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("invalid cursor token: " + token, ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor(token=" + getToken() + ", size=" + size + ")";
+    }
+}
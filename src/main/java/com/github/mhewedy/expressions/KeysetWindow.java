@@ -0,0 +1,34 @@
+package com.github.mhewedy.expressions;
+
+import java.util.List;
+
+/**
+ * A window of results fetched using keyset (seek) pagination.
+ *
+ * @see ExpressionsRepository#findAll(Expressions, org.springframework.data.domain.Sort, KeysetCursor)
+ */
+public final class KeysetWindow<T> {
+
+    private final List<T> content;
+    private final KeysetCursor nextCursor;
+
+    KeysetWindow(List<T> content, KeysetCursor nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * @return the cursor of the next window, or null if this is the last window.
+     */
+    public KeysetCursor getNextCursor() {
+        return nextCursor;
+    }
+}
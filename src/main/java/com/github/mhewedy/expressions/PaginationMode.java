@@ -0,0 +1,31 @@
+package com.github.mhewedy.expressions;
+
+/**
+ * Controls how {@link ExpressionsRepository#findAll(Expressions, org.springframework.data.domain.Pageable)}
+ * fetches the page.
+ *
+ * @see ExpressionsConfig#setPaginationMode(PaginationMode)
+ * @see Expressions#paginationMode(PaginationMode)
+ */
+public enum PaginationMode {
+
+    /**
+     * Fetches the entities of the page in a single query using offset and limit, this is the default:
+     * <pre>
+     * select e.* from employee e where e.last_name = ? order by e.first_name offset ? rows fetch first ? rows only
+     * </pre>
+     */
+    OFFSET,
+
+    /**
+     * Fetches the ids of the page first, then the entities of these ids, which keeps deep pages and distinct queries
+     * (collection filters) cheap, as only the ids and the sort values are paginated by the database:
+     * <pre>
+     * select e.id, e.first_name from employee e where e.last_name = ? order by e.first_name offset ? rows fetch first ? rows only
+     * select e.* from employee e where e.id in (?, ?, ?)
+     * </pre>
+     * The entities are returned in the order of the ids. Entities with composite ids are always fetched using
+     * {@link #OFFSET}.
+     */
+    IDS_FIRST
+}
@@ -0,0 +1,104 @@
+package com.github.mhewedy.expressions;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * An immutable list of integral values backed by a primitive array,
+ * created by {@link Expression#of(String, Operator, long[])} and {@link Expression#of(String, Operator, int[])},
+ * so the large lists of ids are not boxed into lists of objects.
+ * <p>
+ * Converting the list to the java type of the attribute returns a view on the same array, the values are boxed
+ * to that type one at a time by {@link #get(int)}, when each one is bound as a parameter.
+ */
+final class PrimitiveList extends AbstractList<Object> implements RandomAccess {
+
+    private static final Set<Class<?>> TYPES = Set.of(Long.class, Integer.class, Short.class, Byte.class,
+            Double.class, Float.class, BigInteger.class, BigDecimal.class);
+
+    private final long[] values;
+    private final Class<?> type;
+
+    private PrimitiveList(long[] values, Class<?> type) {
+        this.values = values;
+        this.type = type;
+    }
+
+    static PrimitiveList of(long[] values) {
+        Assert.notNull(values, "values must not be null!");
+        return new PrimitiveList(values.clone(), Long.class);
+    }
+
+    static PrimitiveList of(int[] values) {
+        Assert.notNull(values, "values must not be null!");
+        long[] longs = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            longs[i] = values[i];
+        }
+        return new PrimitiveList(longs, Integer.class);
+    }
+
+    /**
+     * @return a view on the same values boxed to the given type,
+     * or null if the type is not numeric.
+     * @throws IllegalArgumentException if any of the values is out of the range of the type.
+     */
+    PrimitiveList as(Class<?> javaType) {
+        Class<?> target = ClassUtils.resolvePrimitiveIfNecessary(javaType);
+        if (target == type) {
+            return this;
+        }
+        if (!TYPES.contains(target)) {
+            return null;
+        }
+        if (target == Integer.class || target == Short.class || target == Byte.class) {
+            for (long value : values) {
+                TypeConverter.checkRange(value, target);
+            }
+        }
+        return new PrimitiveList(values, target);
+    }
+
+    /**
+     * @return the type of the values returned by {@link #get(int)}.
+     */
+    Class<?> getType() {
+        return type;
+    }
+
+    long getLong(int index) {
+        return values[index];
+    }
+
+    @Override
+    public Object get(int index) {
+        long value = values[index];
+        if (type == Long.class) {
+            return value;
+        }
+        if (type == Integer.class || type == Short.class || type == Byte.class) {
+            return TypeConverter.narrow(value, type);
+        }
+        if (type == Double.class) {
+            return (double) value;
+        }
+        if (type == Float.class) {
+            return (float) value;
+        }
+        if (type == BigInteger.class) {
+            return BigInteger.valueOf(value);
+        }
+        return BigDecimal.valueOf(value);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+}
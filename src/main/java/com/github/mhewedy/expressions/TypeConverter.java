@@ -0,0 +1,223 @@
+package com.github.mhewedy.expressions;
+
+import org.springframework.util.ClassUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.chrono.HijrahDate;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Converts the values of the expressions into a single attribute type, using the {@link ValueConverter}
+ * registered to {@link ExpressionsConfig} for that type, or the built-in one.
+ * <p>
+ * Converters are resolved once per type and kept on the {@link FieldPath}, so converting a value is a single call,
+ * and the enums are converted using lookup tables of their constants.
+ */
+final class TypeConverter {
+
+    private static final Map<Class<?>, TypeConverter> CACHE = new ConcurrentHashMap<>();
+
+    final Class<?> type;
+    private final ValueConverter<?> converter;  // null if the values are used as is
+
+    private TypeConverter(Class<?> type, ValueConverter<?> converter) {
+        this.type = type;
+        this.converter = converter;
+    }
+
+    static TypeConverter of(Class<?> javaType) {
+        return CACHE.computeIfAbsent(ClassUtils.resolvePrimitiveIfNecessary(javaType), TypeConverter::resolve);
+    }
+
+    static void clear() {
+        CACHE.clear();
+    }
+
+    Object convert(Object value) {
+        if (value == null || converter == null || type.isInstance(value)) {
+            return value;
+        }
+        return converter.convert(value);
+    }
+
+    /**
+     * @return the same list if none of the values needs conversion, otherwise a new list.
+     */
+    List<Object> convert(List<Object> values) {
+        if (values instanceof PrimitiveList primitives) {
+            // a view on the same array, instead of a list of boxed values
+            PrimitiveList converted = primitives.as(type);
+            if (converted != null) {
+                return converted;
+            }
+        }
+        if (converter == null) {
+            return values;
+        }
+        List<Object> list = null;
+        int i = 0;
+        for (Object value : values) {
+            Object converted = convert(value);
+            if (list == null && converted != value) {
+                list = new ArrayList<>(values.size());
+                list.addAll(values.subList(0, i));
+            }
+            if (list != null) {
+                list.add(converted);
+            }
+            i++;
+        }
+        return list != null ? list : values;
+    }
+
+    private static TypeConverter resolve(Class<?> type) {
+        ValueConverter<?> converter = ExpressionsConfig.getInstance().getValueConverter(type);
+        if (converter == null) {
+            converter = builtIn(type);
+        }
+        return new TypeConverter(type, converter);
+    }
+
+    private static ValueConverter<?> builtIn(Class<?> type) {
+        // dates and times, the parsers of java.time are immutable and thread-safe,
+        // the values of the java api are already typed, and are only parsed if of another type
+        if (type == LocalDate.class) {
+            return temporal(LocalDate::parse);
+        }
+        if (type == Instant.class) {
+            return temporal(Instant::parse);
+        }
+        if (type == LocalDateTime.class) {
+            return temporal(LocalDateTime::parse);
+        }
+        if (type == OffsetDateTime.class) {
+            return temporal(OffsetDateTime::parse);
+        }
+        if (type == ZonedDateTime.class) {
+            return temporal(ZonedDateTime::parse);
+        }
+        if (type == LocalTime.class) {
+            return temporal(LocalTime::parse);
+        }
+        if (type == HijrahDate.class) {
+            return temporal(DateTimeUtil::parseHijrah);
+        }
+        if (type.isEnum()) {
+            return new EnumConverter(type);
+        }
+        if (type == UUID.class) {
+            return value -> UUID.fromString((String) value);
+        }
+
+        // numbers: the integral values are converted to any numeric type, the decimal values to decimal types only,
+        // other values (e.g. the strings of the like operators) are kept
+        if (type == Long.class) {
+            return integral(Number::longValue);
+        }
+        if (type == Integer.class || type == Short.class || type == Byte.class) {
+            return integral(number -> narrow(number.longValue(), type));
+        }
+        if (type == BigInteger.class) {
+            return integral(number -> BigInteger.valueOf(number.longValue()));
+        }
+        if (type == Double.class) {
+            return decimal(Number::doubleValue);
+        }
+        if (type == Float.class) {
+            return decimal(Number::floatValue);
+        }
+        if (type == BigDecimal.class) {
+            return decimal(number -> new BigDecimal(number.toString()));
+        }
+
+        // strings, booleans and other types don't need conversion
+        return null;
+    }
+
+    /**
+     * Narrows the integral value to the given type ({@link Integer}, {@link Short} or {@link Byte}).
+     *
+     * @throws IllegalArgumentException if the value is out of the range of the type, instead of truncating it.
+     */
+    static Object narrow(long value, Class<?> type) {
+        checkRange(value, type);
+        if (type == Integer.class) {
+            return (int) value;
+        }
+        if (type == Short.class) {
+            return (short) value;
+        }
+        return (byte) value;
+    }
+
+    static void checkRange(long value, Class<?> type) {
+        boolean inRange = type == Integer.class ? value == (int) value :
+                type == Short.class ? value == (short) value :
+                        type != Byte.class || value == (byte) value;
+        if (!inRange) {
+            throw new IllegalArgumentException(
+                    String.format("value %d is out of the range of %s", value, type.getSimpleName()));
+        }
+    }
+
+    private static ValueConverter<Object> temporal(Function<String, Object> parser) {
+        return value -> parser.apply(value instanceof Temporal t ? DateTimeUtil.format(t) : (String) value);
+    }
+
+    private static ValueConverter<Object> integral(Function<Number, Object> conversion) {
+        return value -> isIntegral(value) ? conversion.apply((Number) value) : value;
+    }
+
+    private static ValueConverter<Object> decimal(Function<Number, Object> conversion) {
+        return value -> value instanceof Number number ? conversion.apply(number) : value;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    private static final class EnumConverter implements ValueConverter<Object> {
+
+        private final Class<?> type;
+        private final Object[] constants;
+        private final Map<String, Object> byName = new HashMap<>();
+
+        EnumConverter(Class<?> type) {
+            this.type = type;
+            this.constants = type.getEnumConstants();
+            for (Object constant : constants) {
+                byName.put(((Enum<?>) constant).name(), constant);
+            }
+        }
+
+        /**
+         * Converts the ordinals, the names and the constants of other enums by name.
+         */
+        @Override
+        public Object convert(Object value) {
+            if (value instanceof Number number) {
+                return constants[number.intValue()];
+            }
+            String name = value instanceof Enum<?> e ? e.name() : (String) value;
+            Object constant = byName.get(name);
+            if (constant == null) {
+                throw new IllegalArgumentException("No enum constant " + type.getCanonicalName() + "." + name);
+            }
+            return constant;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.mhewedy.expressions;
+
+/**
+ * Converts the values of the expressions (e.g. the {@code String} and {@code Number} values read from json)
+ * into the java type of the attribute they are compared to.
+ * <p>
+ * The built-in converters handle the numbers, enums, dates and times, {@link java.time.chrono.HijrahDate} and
+ * {@link java.util.UUID} attributes, other attribute types (e.g. value types mapped by a
+ * {@link jakarta.persistence.Converter}) can have their own converter, example:
+ * <pre>
+ * ExpressionsConfig.getInstance().registerValueConverter(Money.class, value -&gt; Money.parse(value.toString()));
+ * </pre>
+ * The converter is resolved once per attribute type, and is called for each non-null value
+ * that is not already of the attribute type.
+ *
+ * @see ExpressionsConfig#registerValueConverter(Class, ValueConverter)
+ */
+@FunctionalInterface
+public interface ValueConverter<T> {
+
+    T convert(Object value);
+}
@@ -0,0 +1,164 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.ExpressionsBudgetExceededException.Violation;
+import com.github.mhewedy.expressions.ExpressionsRepositoryImpl.ExpressionsSpecification;
+import com.github.mhewedy.expressions.model.Department;
+import com.github.mhewedy.expressions.model.Employee;
+import com.github.mhewedy.expressions.model.Task;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.metamodel.ManagedType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.List;
+
+import static com.github.mhewedy.expressions.Operator.*;
+import static com.github.mhewedy.expressions.model.Status.ACTIVE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.github.mhewedy.expressions.SqlStatementRecorder"
+})
+@ContextConfiguration(classes = {JpaRepositoriesAutoConfiguration.class, DataSourceAutoConfiguration.class})
+@EntityScan("com.github.mhewedy.expressions")
+@EnableJpaRepositories(repositoryBaseClass = ExpressionsRepositoryImpl.class, basePackages = "com.github.mhewedy.expressions")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class ExpressionsBudgetTest {
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void setup() {
+        employeeRepository.saveAll(List.of(
+                employee("ali", "Sales", "report"),
+                employee("ibrahim", "HR", "hiring")
+        ));
+    }
+
+    @AfterEach
+    public void finish() {
+        ExpressionsConfig.getInstance().setDefaultBudget(null);
+        ExpressionsConfig.getInstance().removeBudget(Employee.class);
+    }
+
+    @Test
+    public void testCost() {
+        ManagedType<?> type = entityManager.getMetamodel().entity(Employee.class);
+        List<Expression> expressions = List.of(
+                Expression.of("department.name", $eq, "Sales"),
+                Expression.or(
+                        Expression.of("tasks.name", $contains, "port"),
+                        Expression.of("department.city.name", $start, "%iro")
+                ),
+                Expression.of("age", $in, 10, 20, 30)
+        );
+
+        assertThat(ExpressionsCost.of(type, expressions, CollectionFilterMode.DISTINCT_JOIN))
+                .isEqualTo(new ExpressionsCost(1, 4, 3, 1, 2, 3));
+        assertThat(ExpressionsCost.of(type, expressions, CollectionFilterMode.EXISTS).distinctJoins()).isZero();
+        assertThat(new ExpressionsCost(1, 4, 3, 1, 2, 3).estimate()).isEqualTo(4 + 30 + 100 + 100);
+    }
+
+    @Test
+    public void testOverBudgetIsRejected() {
+        ExpressionsConfig.getInstance().setBudget(Employee.class, ExpressionsBudget.unlimited()
+                .withMaximumJoins(1)
+                .withMaximumLeadingWildcards(0));
+
+        ExpressionsBudgetExceededException ex = budgetExceeded(() -> employeeRepository.findAll(
+                Expression.of("tasks.name", $icontains, "port")
+                        .and(Expression.of("department.name", $eq, "Sales")).build()));
+
+        assertThat(ex.getEntityType()).isEqualTo(Employee.class);
+        assertThat(ex.getCost().joins()).isEqualTo(2);
+        assertThat(ex.getViolations()).containsExactly(
+                new Violation("joins", 2, 1),
+                new Violation("leadingWildcards", 1, 0));
+        assertThat(ex.getMessage()).isEqualTo("expressions of Employee exceed the budget: joins 2 > 1, leadingWildcards 1 > 0");
+
+        // within the budget
+        assertThat(employeeRepository.findAll(Expression.of("department.name", $eq, "Sales").build())).hasSize(1);
+    }
+
+    @Test
+    public void testOverBudgetIsDowngraded() {
+        Expressions expressions = Expression.of("tasks.name", $eq, "report").build();
+        ExpressionsConfig.getInstance().setBudget(Employee.class, ExpressionsBudget.unlimited()
+                .withMaximumDistinctJoins(0));
+        budgetExceeded(() -> employeeRepository.findAll(expressions));
+
+        ExpressionsConfig.getInstance().setBudget(Employee.class, ExpressionsBudget.unlimited()
+                .withMaximumDistinctJoins(0)
+                .withDowngrade(true));
+
+        SqlStatementRecorder.STATEMENTS.clear();
+        assertThat(employeeRepository.findAll(expressions)).extracting(it -> it.lastName).containsExactly("ali");
+        assertThat(SqlStatementRecorder.STATEMENTS.get(SqlStatementRecorder.STATEMENTS.size() - 1))
+                .contains("exists").doesNotContain("distinct");
+    }
+
+    @Test
+    public void testEntityBudgetReplacesTheDefaultBudget() {
+        Expressions expressions = Expression.of("department.name", $eq, "HR").build();
+        ExpressionsConfig.getInstance().setDefaultBudget(ExpressionsBudget.unlimited().withMaximumJoins(0));
+        budgetExceeded(() -> employeeRepository.findAll(expressions));
+
+        ExpressionsConfig.getInstance().setBudget(Employee.class, ExpressionsBudget.unlimited());
+        assertThat(employeeRepository.findAll(expressions)).extracting(it -> it.lastName).containsExactly("ibrahim");
+    }
+
+    @Test
+    public void testBudgetIsCheckedOncePerSpecification() {
+        Expressions expressions = Expression.of("department.name", $eq, "HR").build();
+        ExpressionsSpecification<Employee> specification = new ExpressionsSpecification<>(expressions);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Employee> select = cb.createQuery(Employee.class);
+        specification.toPredicate(select.from(Employee.class), select, cb);
+
+        // the cost is not computed again for the count query of the same specification
+        ExpressionsConfig.getInstance().setBudget(Employee.class, ExpressionsBudget.unlimited().withMaximumJoins(0));
+        CriteriaQuery<Long> count = cb.createQuery(Long.class);
+        specification.toPredicate(count.from(Employee.class), count, cb);
+
+        CriteriaQuery<Employee> other = cb.createQuery(Employee.class);
+        budgetExceeded(() -> new ExpressionsSpecification<Employee>(expressions)
+                .toPredicate(other.from(Employee.class), other, cb));
+    }
+
+    /**
+     * The exception is thrown as is, or translated by the repository.
+     */
+    private static ExpressionsBudgetExceededException budgetExceeded(Runnable query) {
+        Throwable thrown = catchThrowable(query::run);
+        while (thrown != null && !(thrown instanceof ExpressionsBudgetExceededException)) {
+            thrown = thrown.getCause();
+        }
+        assertThat(thrown).isNotNull();
+        return (ExpressionsBudgetExceededException) thrown;
+    }
+
+    private static Employee employee(String lastName, String departmentName, String taskName) {
+        Employee employee = new Employee();
+        employee.lastName = lastName;
+        employee.department = new Department(null, departmentName, null);
+        employee.tasks = List.of(new Task(null, taskName, ACTIVE));
+        return employee;
+    }
+}
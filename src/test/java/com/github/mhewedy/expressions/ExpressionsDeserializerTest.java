@@ -0,0 +1,249 @@
+package com.github.mhewedy.expressions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.github.mhewedy.expressions.Expression.AndExpression;
+import com.github.mhewedy.expressions.Expression.ListExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+import com.github.mhewedy.expressions.Expression.SingularExpression;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.time.chrono.HijrahDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExpressionsDeserializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new ExpressionsModule());
+
+    @Test
+    public void testTreeIsReadDirectly() throws Exception {
+        Expressions expressions = objectMapper.readValue("""
+                {
+                  "status": "A",
+                  "$or": [
+                    {"qty": {"$lt": 30}},
+                    {"item": {"$in": ["A", "D"]}}
+                  ]
+                }
+                """, Expressions.class);
+
+        List<Expression> list = expressions.getExpressions();
+        assertThat(list).hasSize(2);
+
+        SingularExpression status = (SingularExpression) list.get(0);
+        assertThat(status.field).isEqualTo("status");
+        assertThat(status.operator).isEqualTo(Operator.$eq);
+        assertThat(status.value).isEqualTo("A");
+
+        OrExpression or = (OrExpression) list.get(1);
+        SingularExpression qty = (SingularExpression) or.expressions.get(0);
+        assertThat(qty.operator).isEqualTo(Operator.$lt);
+        assertThat(qty.value).isEqualTo(30);
+        ListExpression item = (ListExpression) or.expressions.get(1);
+        assertThat(item.operator).isEqualTo(Operator.$in);
+        assertThat(item.values).containsExactly("A", "D");
+    }
+
+    @Test
+    public void testMultipleFieldsInGroupAreAnded() throws Exception {
+        Expressions expressions = objectMapper.readValue("""
+                {"$or": [{"firstName": "ali", "age": {"$gt": 10, "$lt": 20}}, {"lastName": "ibrahim"}]}
+                """, Expressions.class);
+
+        OrExpression or = (OrExpression) expressions.getExpressions().get(0);
+        assertThat(or.expressions).hasSize(2);
+        assertThat(((AndExpression) or.expressions.get(0)).expressions).hasSize(3);
+    }
+
+    @Test
+    public void testMapIsMaterializedOnAccess() throws Exception {
+        Expressions expressions = objectMapper.readValue("""
+                {"lastName": "ibrahim", "age": {"$gt": 10}}
+                """, Expressions.class);
+
+        assertThat(expressions).hasSize(1).containsKey("$and");
+        assertThat(expressions.extractFields()).extracting(Expressions.Field::name).containsExactly("lastName", "age");
+
+        expressions.and(Expression.of("firstName", Operator.$eq, "ali"));
+        assertThat(expressions.extractFields()).extracting(Expressions.Field::name)
+                .containsExactlyInAnyOrder("lastName", "age", "firstName");
+    }
+
+    @Test
+    public void testAllMapMethodsMaterializeTheTree() throws Exception {
+        // a method of HashMap not overridden would see an empty map before the tree is materialized
+        for (Method method : HashMap.class.getDeclaredMethods()) {
+            if (Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())) {
+                assertThatCode(() -> Expressions.class.getDeclaredMethod(method.getName(), method.getParameterTypes()))
+                        .as(method.toString())
+                        .doesNotThrowAnyException();
+            }
+        }
+
+        assertThat(tree().size()).isEqualTo(1);
+        assertThat(tree().isEmpty()).isFalse();
+        assertThat(tree().get("lastName")).isEqualTo("ibrahim");
+        assertThat(tree().getOrDefault("lastName", "ahmed")).isEqualTo("ibrahim");
+        assertThat(tree().containsKey("lastName")).isTrue();
+        assertThat(tree().containsValue("ibrahim")).isTrue();
+        assertThat(tree().keySet()).containsExactly("lastName");
+        assertThat(tree().values()).containsExactly("ibrahim");
+        assertThat(tree().entrySet()).containsExactly(Map.entry("lastName", "ibrahim"));
+        assertThat(tree().clone()).isEqualTo(Map.of("lastName", "ibrahim"));
+        assertThat(tree()).isEqualTo(Map.of("lastName", "ibrahim"))
+                .hasSameHashCodeAs(Map.of("lastName", "ibrahim"))
+                .hasToString("{lastName=ibrahim}");
+
+        Map<String, Object> visited = new HashMap<>();
+        tree().forEach(visited::put);
+        assertThat(visited).isEqualTo(Map.of("lastName", "ibrahim"));
+
+        assertThat(modified(it -> it.put("age", 10))).containsOnlyKeys("lastName", "age");
+        assertThat(modified(it -> it.putAll(Map.of("age", 10)))).containsOnlyKeys("lastName", "age");
+        assertThat(modified(it -> it.putIfAbsent("lastName", "ahmed"))).containsEntry("lastName", "ibrahim");
+        assertThat(modified(it -> it.remove("lastName"))).isEmpty();
+        assertThat(modified(it -> it.remove("lastName", "ibrahim"))).isEmpty();
+        assertThat(modified(it -> it.replace("lastName", "ahmed"))).containsEntry("lastName", "ahmed");
+        assertThat(modified(it -> it.replace("lastName", "ibrahim", "ahmed"))).containsEntry("lastName", "ahmed");
+        assertThat(modified(it -> it.replaceAll((key, value) -> "ahmed"))).containsEntry("lastName", "ahmed");
+        assertThat(modified(it -> it.computeIfAbsent("lastName", key -> "ahmed"))).containsEntry("lastName", "ibrahim");
+        assertThat(modified(it -> it.computeIfPresent("lastName", (key, value) -> value + "2")))
+                .containsEntry("lastName", "ibrahim2");
+        assertThat(modified(it -> it.compute("lastName", (key, value) -> value + "2")))
+                .containsEntry("lastName", "ibrahim2");
+        assertThat(modified(it -> it.merge("lastName", "2", (value, other) -> value + "2")))
+                .containsEntry("lastName", "ibrahim2");
+        assertThat(modified(Expressions::clear)).isEmpty();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(tree());
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertThat(in.readObject()).isEqualTo(Map.of("lastName", "ibrahim"));
+        }
+    }
+
+    private Expressions tree() throws Exception {
+        return objectMapper.readValue("""
+                {"lastName": "ibrahim"}
+                """, Expressions.class);
+    }
+
+    /**
+     * @return the modified tree, after checking its expressions are the same as the ones read from its map.
+     */
+    private Map<String, Object> modified(Consumer<Expressions> modification) throws Exception {
+        Expressions expressions = tree();
+        modification.accept(expressions);
+        ObjectMapper mapper = new ObjectMapper();
+        assertThat(ExpressionsFingerprint.of(expressions.getExpressions())).isEqualTo(ExpressionsFingerprint.of(
+                mapper.readValue(mapper.writeValueAsString(expressions), Expressions.class).getExpressions()));
+        return expressions;
+    }
+
+    @Test
+    public void testSameShapeAsTheDefaultDeserialization() throws Exception {
+        String json = """
+                {"$and": [{"lastName": "ibrahim"}, {"age": {"$nin": [1, 2]}}, {"$or": [{"active": true}, {"birthDate": null}]}]}
+                """;
+
+        List<Expression> expected = new ObjectMapper().readValue(json, Expressions.class).getExpressions();
+        List<Expression> actual = objectMapper.readValue(json, Expressions.class).getExpressions();
+
+        assertThat(ExpressionsPlan.shapeOf(actual, new ArrayList<>()))
+                .isEqualTo(ExpressionsPlan.shapeOf(expected, new ArrayList<>()));
+    }
+
+    @Test
+    public void testSameExpressionsAsTheDefaultDeserialization() throws Exception {
+        // sibling fields and operators are "and"ed, duplicate fields and operators replace the previous ones
+        String json = """
+                {
+                  "lastName": "ahmed",
+                  "$or": [
+                    {"firstName": "ali", "age": {"$gt": 10, "$lt": 20, "$lt": 30}},
+                    {"lastName": "ibrahim", "lastName": "ahmed", "active": true},
+                    {}
+                  ],
+                  "lastName": "ibrahim"
+                }
+                """;
+
+        List<Expression> expected = new ObjectMapper().readValue(json, Expressions.class).getExpressions();
+        List<Expression> actual = objectMapper.readValue(json, Expressions.class).getExpressions();
+
+        assertThat(ExpressionsFingerprint.of(actual)).isEqualTo(ExpressionsFingerprint.of(expected));
+        assertThat(ExpressionsFingerprint.of(actual)).isEqualTo(ExpressionsFingerprint.of(Expression.of("lastName", Operator.$eq, "ibrahim")
+                .and(Expression.or(
+                        Expression.and(
+                                Expression.of("firstName", Operator.$eq, "ali"),
+                                Expression.of("age", Operator.$gt, 10),
+                                Expression.of("age", Operator.$lt, 30)),
+                        Expression.and(
+                                Expression.of("lastName", Operator.$eq, "ahmed"),
+                                Expression.of("active", Operator.$eq, true)),
+                        Expression.and()))
+                .build()));
+    }
+
+    @Test
+    public void testUnsupportedOperatorFailsWhileReading() {
+        assertThatThrownBy(() -> objectMapper.readValue("""
+                {"lastName": {"$not_supported_operator": "rah"}}
+                """, Expressions.class))
+                .isInstanceOf(InvalidFormatException.class)
+                .hasMessageContaining("$not_supported_operator");
+    }
+
+    @Test
+    public void testListOperatorRequiresArray() {
+        assertThatThrownBy(() -> objectMapper.readValue("""
+                {"age": {"$in": 10}}
+                """, Expressions.class))
+                .isInstanceOf(MismatchedInputException.class)
+                .hasMessageContaining("accepts list of values");
+    }
+
+    @Test
+    public void testNestedInBean() throws Exception {
+        Request request = objectMapper.readValue("""
+                {"filter": {"lastName": "ibrahim"}, "size": 10}
+                """, Request.class);
+
+        assertThat(request.filter().getExpressions()).hasSize(1);
+        assertThat(request.filter()).isEqualTo(Map.of("lastName", "ibrahim"));
+    }
+
+    @Test
+    public void testTemporalValuesAreWrittenAsRead() throws Exception {
+        Expressions expressions = Expression.of("hBirthDate", Operator.$gte, HijrahDate.of(1390, 9, 29))
+                .and(Expression.of("birthDate", Operator.$in, LocalDate.of(1980, 1, 1), LocalDate.of(1990, 1, 1)))
+                .build();
+
+        String json = objectMapper.writeValueAsString(expressions);
+        assertThat(json).contains("\"1390-09-29\"").contains("[\"1980-01-01\",\"1990-01-01\"]");
+
+        assertThat(objectMapper.readValue(json, Expressions.class).getExpressions())
+                .hasSize(2);
+    }
+
+    public record Request(Expressions filter, int size) {
+    }
+}
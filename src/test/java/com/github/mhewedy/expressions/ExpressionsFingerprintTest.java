@@ -0,0 +1,90 @@
+package com.github.mhewedy.expressions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.mhewedy.expressions.model.Employee.Lang;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static com.github.mhewedy.expressions.Operator.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpressionsFingerprintTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testOrderDoesNotMatter() throws Exception {
+        ExpressionsFingerprint a = fingerprint("""
+                {"$and": [{"lastName": "ibrahim"}, {"$or": [{"age": {"$gt": 10}}, {"active": true}]}]}
+                """);
+        ExpressionsFingerprint b = fingerprint("""
+                {"$and": [{"$or": [{"active": true}, {"age": {"$gt": 10}}]}, {"lastName": "ibrahim"}]}
+                """);
+
+        assertThat(a).isEqualTo(b);
+    }
+
+    @Test
+    public void testImplicitAndExplicitEqAreTheSame() throws Exception {
+        assertThat(fingerprint("{\"lastName\": \"ibrahim\"}"))
+                .isEqualTo(fingerprint("{\"lastName\": {\"$eq\": \"ibrahim\"}}"));
+    }
+
+    @Test
+    public void testValuesAreNormalized() {
+        ExpressionsFingerprint integer = ExpressionsFingerprint.of(Expression.of("age", $eq, 10).build());
+
+        assertThat(ExpressionsFingerprint.of(Expression.of("age", $eq, 10L).build())).isEqualTo(integer);
+        assertThat(ExpressionsFingerprint.of(Expression.of("age", $eq, 10.0).build())).isEqualTo(integer);
+        assertThat(ExpressionsFingerprint.of(Expression.of("age", $eq, new BigDecimal("10.00")).build())).isEqualTo(integer);
+        assertThat(ExpressionsFingerprint.of(Expression.of("age", $eq, 10.5).build())).isNotEqualTo(integer);
+
+        assertThat(ExpressionsFingerprint.of(Expression.of("lang", $eq, Lang.AR).build()))
+                .isEqualTo(ExpressionsFingerprint.of(Expression.of("lang", $eq, "AR").build()));
+        assertThat(ExpressionsFingerprint.of(Expression.of("birthDate", $eq, LocalDate.of(1990, 1, 1)).build()))
+                .isEqualTo(ExpressionsFingerprint.of(Expression.of("birthDate", $eq, "1990-01-01").build()));
+        assertThat(ExpressionsFingerprint.of(Expression.of("id", $in, new long[]{1, 2}).build()))
+                .isEqualTo(ExpressionsFingerprint.of(Expression.of("id", $in, 1, 2).build()));
+    }
+
+    @Test
+    public void testSameShapeWithDifferentValues() {
+        ExpressionsFingerprint a = ExpressionsFingerprint.of(Expression.of("age", $in, 10, 20)
+                .and(Expression.of("lastName", $eq, "ibrahim")).build());
+        ExpressionsFingerprint b = ExpressionsFingerprint.of(Expression.of("age", $in, 30, 40)
+                .and(Expression.of("lastName", $eq, "ali")).build());
+        ExpressionsFingerprint c = ExpressionsFingerprint.of(Expression.of("age", $nin, 30, 40)
+                .and(Expression.of("lastName", $eq, "ali")).build());
+
+        assertThat(a.shapeHash()).isEqualTo(b.shapeHash());
+        assertThat(a.fullHash()).isNotEqualTo(b.fullHash());
+        assertThat(b.shapeHash()).isNotEqualTo(c.shapeHash());
+        assertThat(a.shapeHex()).hasSize(16);
+    }
+
+    @Test
+    public void testInValuesOrderDoesNotMatter() {
+        assertThat(ExpressionsFingerprint.of(Expression.of("age", $in, 10, 20, 30).build()))
+                .isEqualTo(ExpressionsFingerprint.of(Expression.of("age", $in, 30, 10, 20).build()));
+    }
+
+    @Test
+    public void testNestedGroupsAreFlattened() {
+        Expression a = Expression.of("firstName", $eq, "ahmed");
+        Expression b = Expression.of("lastName", $eq, "ibrahim");
+        Expression c = Expression.of("age", $gt, 10);
+
+        ExpressionsFingerprint nested = ImmutableExpressions.of(a).and(ImmutableExpressions.of(b).and(c)).fingerprint();
+        ExpressionsFingerprint flat = ImmutableExpressions.builder().and(c).and(b).and(a).build().fingerprint();
+        ExpressionsFingerprint or = ImmutableExpressions.of(a).or(ImmutableExpressions.of(b).and(c)).fingerprint();
+
+        assertThat(nested).isEqualTo(flat);
+        assertThat(or.shapeHash()).isNotEqualTo(flat.shapeHash());
+    }
+
+    private ExpressionsFingerprint fingerprint(String json) throws Exception {
+        return ExpressionsFingerprint.of(objectMapper.readValue(json, Expressions.class));
+    }
+}
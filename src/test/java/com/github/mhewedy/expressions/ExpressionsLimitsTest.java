@@ -0,0 +1,160 @@
+package com.github.mhewedy.expressions;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.mhewedy.expressions.model.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.mhewedy.expressions.Operator.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ContextConfiguration(classes = {JpaRepositoriesAutoConfiguration.class, DataSourceAutoConfiguration.class})
+@EntityScan("com.github.mhewedy.expressions")
+@EnableJpaRepositories(repositoryBaseClass = ExpressionsRepositoryImpl.class, basePackages = "com.github.mhewedy.expressions")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class ExpressionsLimitsTest {
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void setup() {
+        employeeRepository.saveAll(List.of(employee("a", 10), employee("b", 20), employee("c", 9_999)));
+    }
+
+    @AfterEach
+    public void finish() {
+        ExpressionsConfig.getInstance().setMaximumDepth(1000);
+        ExpressionsConfig.getInstance().setMaximumTerms(10_000);
+    }
+
+    @Test
+    public void testTenThousandTerms() {
+        Expression[] terms = new Expression[10_000];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = Expression.of("age", $eq, i);
+        }
+
+        assertThat(employeeRepository.findAll(Expression.or(terms).build())).extracting(it -> it.lastName)
+                .containsExactlyInAnyOrder("a", "b", "c");
+    }
+
+    @Test
+    public void testLargeGroupsAreBalanced() {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        List<Predicate> predicates = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            predicates.add(cb.equal(cb.literal(i), i));
+        }
+
+        Predicate predicate = ExpressionsPredicateBuilder.combine(cb, predicates, false);
+        assertThat(predicate.getExpressions()).hasSize(100)
+                .allSatisfy(it -> assertThat(((Predicate) it).getExpressions()).hasSize(100));
+
+        // single predicates are not wrapped
+        assertThat(ExpressionsPredicateBuilder.combine(cb, predicates.subList(0, 1), true)).isSameAs(predicates.get(0));
+    }
+
+    @Test
+    public void testThousandDeep() throws Exception {
+        // using the java api
+        Expression expression = Expression.of("age", $gte, 0);
+        for (int i = 0; i < 999; i++) {
+            expression = Expression.and(expression, Expression.of("age", $lt, 10_000 + i));
+        }
+        assertThat(employeeRepository.findAll(expression.build())).hasSize(3);
+
+        // using the tree of the expressions
+        List<Expression> tree = List.of(Expression.of("age", $gte, 0));
+        for (int i = 0; i < 1000; i++) {
+            tree = List.of(i % 2 == 0 ? Expression.or(tree.get(0)) : Expression.and(tree.get(0)));
+        }
+        assertThat(employeeRepository.findAll(Expressions.of(tree))).hasSize(3);
+
+        // using the maps of the default json deserialization and of the expressions module
+        String json = "{\"age\": {\"$gte\": 0}}";
+        for (int i = 0; i < 1000; i++) {
+            json = "{\"$and\": [" + json + "]}";
+        }
+        assertThat(employeeRepository.findAll(new ObjectMapper().readValue(json, Expressions.class))).hasSize(3);
+        assertThat(employeeRepository.findAll(new ObjectMapper().registerModule(new ExpressionsModule())
+                .readValue(json, Expressions.class))).hasSize(3);
+    }
+
+    @Test
+    public void testDeepTreesDontOverflowTheCallStack() throws Exception {
+        Expression leaf = Expression.of("age", $gte, 0);
+        Expression expression = leaf;
+        for (int i = 0; i < 100_000; i++) {
+            expression = i % 2 == 0 ? Expression.or(expression) : Expression.and(expression);
+        }
+        List<Expression> tree = List.of(expression);
+
+        // single member groups are unwrapped
+        assertThat(ExpressionsFingerprint.of(tree)).isEqualTo(ExpressionsFingerprint.of(List.of(leaf)));
+
+        ImmutableExpressions immutable = ImmutableExpressions.of(expression);
+        assertThat(immutable).isEqualTo(ImmutableExpressions.of(expression)).hasSameHashCodeAs(ImmutableExpressions.of(expression));
+        assertThat(immutable).isNotEqualTo(ImmutableExpressions.of(leaf));
+        assertThat(immutable.toExpressions().getExpressions()).hasSize(1);
+
+        String json = new ObjectMapper().registerModule(new ExpressionsModule()).writeValueAsString(Expressions.of(tree));
+        assertThat(json).contains("{\"$or\":[{\"$and\":[{\"$or\":[").contains("{\"age\":{\"$gte\":0}}").endsWith("]}]}]}");
+    }
+
+    @Test
+    public void testLimitsAreEnforced() {
+        Expression expression = Expression.of("age", $gte, 0);
+        for (int i = 0; i < 1001; i++) {
+            expression = Expression.and(expression);
+        }
+        List<Expression> deep = List.of(expression);
+        assertThatThrownBy(() -> ExpressionsLimits.check(deep))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("expressions exceed the maximum depth of 1000");
+        assertThatThrownBy(() -> employeeRepository.findAll(Expressions.of(deep)))
+                .hasMessageContaining("expressions exceed the maximum depth of 1000");
+
+        ExpressionsConfig.getInstance().setMaximumTerms(2);
+        Expression wide = Expression.of("age", $in, 10, 20)
+                .or(Expression.of("lastName", $eq, "a"))
+                .or(Expression.of("lastName", $eq, "b"));
+        assertThatThrownBy(() -> ExpressionsLimits.check(List.of(wide)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("expressions exceed the maximum terms of 2");
+
+        ExpressionsConfig.getInstance().setMaximumDepth(2);
+        assertThatThrownBy(() -> new ObjectMapper().registerModule(new ExpressionsModule()).readValue(
+                "{\"$or\": [{\"$and\": [{\"$or\": [{\"age\": 10}]}]}]}", Expressions.class))
+                .isInstanceOf(JsonMappingException.class)
+                .hasMessageContaining("expressions exceed the maximum depth of 2");
+    }
+
+    private static Employee employee(String lastName, int age) {
+        Employee employee = new Employee();
+        employee.lastName = lastName;
+        employee.age = age;
+        return employee;
+    }
+}
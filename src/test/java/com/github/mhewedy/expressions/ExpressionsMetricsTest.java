@@ -0,0 +1,142 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.model.Employee;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.github.mhewedy.expressions.Operator.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ContextConfiguration(classes = {JpaRepositoriesAutoConfiguration.class, DataSourceAutoConfiguration.class})
+@EntityScan("com.github.mhewedy.expressions")
+@EnableJpaRepositories(repositoryBaseClass = ExpressionsRepositoryImpl.class, basePackages = "com.github.mhewedy.expressions")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class ExpressionsMetricsTest {
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @AfterEach
+    public void finish() {
+        ExpressionsMetrics.getInstance().reset();
+    }
+
+    @Test
+    public void testMetersAreRecorded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ExpressionsMetrics.getInstance().bindTo(registry);
+
+        Expressions expressions = Expression.of("firstName", $start, "a")
+                .and(Expression.or(
+                        Expression.of("age", $in, 10, 20, 30),
+                        Expression.of("department.name", $eq, "hr")
+                ))
+                .build();
+
+        employeeRepository.findAll(expressions, PageRequest.of(0, 10));
+        employeeRepository.count(expressions);
+
+        Timer page = registry.get("expressions.query").tag("entity", "Employee").tag("operation", "page").timer();
+        Timer count = registry.get("expressions.query").tag("operation", "count").timer();
+        assertThat(page.count()).isEqualTo(1);
+        assertThat(count.count()).isEqualTo(1);
+        assertThat(page.getId().getTag("shape")).isEqualTo(count.getId().getTag("shape"));
+
+        // the count query of the page is skipped, as the first page is not full
+        assertThat(registry.get("expressions.predicate").timer().count()).isEqualTo(2);
+
+        DistributionSummary resultSize = registry.get("expressions.result.size").tag("operation", "page").summary();
+        assertThat(resultSize.count()).isEqualTo(1);
+
+        // the builder api wraps the expressions into two $and levels, then comes the $or level
+        assertThat(registry.get("expressions.tree.depth").summary().max()).isEqualTo(4);
+        assertThat(registry.get("expressions.in.size").summary().max()).isEqualTo(3);
+        assertThat(registry.get("expressions.joins").summary().max()).isEqualTo(1);
+    }
+
+    @Test
+    public void testShapesAreBounded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ExpressionsMetrics.getInstance().bindTo(registry);
+        ExpressionsMetrics.getInstance().setMaximumShapes(1);
+
+        employeeRepository.findAll(Expression.of("lastName", $eq, "ibrahim").build());
+        employeeRepository.findAll(Expression.of("firstName", $eq, "ali").build());
+        employeeRepository.findAll(Expression.of("age", $gt, 10).build());
+
+        assertThat(registry.get("expressions.query").timers()).hasSize(2);
+        assertThat(registry.get("expressions.query").tag("shape", "other").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedQueriesAreTimed() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ExpressionsMetrics.getInstance().bindTo(registry);
+
+        assertThatThrownBy(() -> employeeRepository.findAll(Expression.of("notFound", $eq, "x").build()));
+
+        assertThat(registry.find("expressions.query").tag("exception", "none").timers()).isEmpty();
+        assertThat(registry.get("expressions.query").timer().getId().getTag("exception")).isNotEqualTo("none");
+        assertThat(registry.get("expressions.query").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testStreamIsTimedUntilClosed() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ExpressionsMetrics.getInstance().bindTo(registry);
+
+        try (Stream<Employee> employees = employeeRepository.streamAll(
+                Expression.of("lastName", $eq, "ibrahim").build(), Sort.by("id"))) {
+            assertThat(registry.find("expressions.query").tag("operation", "stream").timers()).isEmpty();
+            employees.forEach(it -> {
+            });
+        }
+
+        assertThat(registry.get("expressions.query").tag("operation", "stream").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testQueriesAreObserved() {
+        List<String> operations = new ArrayList<>();
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new ObservationHandler<Observation.Context>() {
+            @Override
+            public void onStop(Observation.Context context) {
+                operations.add(context.getName() + ":" + context.getLowCardinalityKeyValue("operation").getValue());
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+        ExpressionsMetrics.getInstance().setObservationRegistry(registry);
+
+        employeeRepository.findAll(Expression.of("lastName", $eq, "ibrahim").build());
+
+        assertThat(operations).containsExactly("expressions.query:findAll");
+    }
+}
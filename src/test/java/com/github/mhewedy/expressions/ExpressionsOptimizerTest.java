@@ -0,0 +1,172 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.Expression.ListExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+import com.github.mhewedy.expressions.Expression.SingularExpression;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpressionsOptimizerTest {
+
+    @Test
+    public void testNestedGroupsAreFlattenedAndDuplicatesRemoved() {
+        var expressions = Expression.of("firstName", Operator.$eq, "ahmed")
+                .and(Expression.and(
+                        Expression.of("lastName", Operator.$eq, "ali"),
+                        Expression.of("firstName", Operator.$eq, "ahmed")
+                )).build();
+
+        ExpressionsOptimizer.Result result = ExpressionsOptimizer.optimize(expressions.getExpressions());
+
+        assertThat(result.unsatisfiable()).isFalse();
+        assertThat(result.expressions()).hasSize(2).allMatch(it -> it instanceof SingularExpression);
+    }
+
+    @Test
+    public void testEqualitiesOnTheSameFieldAreMergedIntoIn() {
+        var expressions = Expression.or(
+                Expression.of("age", Operator.$eq, 10),
+                Expression.or(
+                        Expression.of("age", Operator.$in, 20, 30),
+                        Expression.of("lastName", Operator.$eq, "ali")
+                ),
+                Expression.of("age", Operator.$eq, 10)
+        ).build();
+
+        ExpressionsOptimizer.Result result = ExpressionsOptimizer.optimize(expressions.getExpressions());
+
+        OrExpression or = (OrExpression) result.expressions().get(0);
+        assertThat(or.expressions).hasSize(2);
+        ListExpression in = (ListExpression) or.expressions.get(0);
+        assertThat(in.field).isEqualTo("age");
+        assertThat(in.operator).isEqualTo(Operator.$in);
+        assertThat(in.values).containsExactly(10, 20, 30);
+    }
+
+    @Test
+    public void testEqualitiesOfDifferentTypesAreNotMerged() {
+        var expressions = Expression.or(
+                Expression.of("id", Operator.$eq, 10),
+                Expression.of("id", Operator.$eq, 10_000_000_000L)
+        ).build();
+
+        ExpressionsOptimizer.Result result = ExpressionsOptimizer.optimize(expressions.getExpressions());
+
+        assertThat(((OrExpression) result.expressions().get(0)).expressions).hasSize(2);
+    }
+
+    @Test
+    public void testEmptyInIsNotMerged() {
+        List<Object> empty = new ArrayList<>(List.of(20));
+        Expression expression = Expression.or(
+                Expression.of("age", Operator.$eq, 10),
+                Expression.of("age", Operator.$in, empty)
+        );
+        empty.clear();  // the values are only checked when creating the expression
+
+        ExpressionsOptimizer.Result result = ExpressionsOptimizer.optimize(List.of(expression));
+
+        OrExpression or = (OrExpression) result.expressions().get(0);
+        assertThat(or.expressions).hasSize(2);
+        assertThat(((ListExpression) or.expressions.get(1)).values).isEmpty();
+    }
+
+    @Test
+    public void testBoundsAreReducedToTheTightest() {
+        var expressions = Expression.of("age", Operator.$gt, 10)
+                .and(Expression.of("age", Operator.$gte, 20))
+                .and(Expression.of("age", Operator.$lt, 50))
+                .and(Expression.of("age", Operator.$lte, 40.5))
+                .build();
+
+        ExpressionsOptimizer.Result result = ExpressionsOptimizer.optimize(expressions.getExpressions());
+
+        assertThat(result.expressions()).hasSize(2);
+        SingularExpression lower = (SingularExpression) result.expressions().get(0);
+        SingularExpression upper = (SingularExpression) result.expressions().get(1);
+        assertThat(lower.operator).isEqualTo(Operator.$gte);
+        assertThat(lower.value).isEqualTo(20);
+        assertThat(upper.operator).isEqualTo(Operator.$lte);
+        assertThat(upper.value).isEqualTo(40.5);
+    }
+
+    @Test
+    public void testContradictionsAreDetected() {
+        assertThat(unsatisfiable(Expression.of("age", Operator.$eq, 10)
+                .and(Expression.of("age", Operator.$eq, 20)))).isTrue();
+        assertThat(unsatisfiable(Expression.of("age", Operator.$gt, 30)
+                .and(Expression.of("age", Operator.$lt, 20)))).isTrue();
+        assertThat(unsatisfiable(Expression.of("age", Operator.$gt, 30)
+                .and(Expression.of("age", Operator.$lte, 30)))).isTrue();
+        assertThat(unsatisfiable(Expression.of("age", Operator.$eq, 10)
+                .and(Expression.of("age", Operator.$gte, 20)))).isTrue();
+        assertThat(unsatisfiable(Expression.of("age", Operator.$eq, (Object) null)
+                .and(Expression.of("age", Operator.$gt, 20)))).isTrue();
+        assertThat(unsatisfiable(Expression.of("active", Operator.$eq, true)
+                .and(Expression.of("active", Operator.$eq, false)))).isTrue();
+    }
+
+    @Test
+    public void testContradictionInsideOrOnlyRemovesTheBranch() {
+        var expressions = Expression.or(
+                Expression.and(
+                        Expression.of("age", Operator.$eq, 10),
+                        Expression.of("age", Operator.$eq, 20)
+                ),
+                Expression.of("lastName", Operator.$eq, "ali")
+        ).build();
+
+        ExpressionsOptimizer.Result result = ExpressionsOptimizer.optimize(expressions.getExpressions());
+
+        assertThat(result.unsatisfiable()).isFalse();
+        assertThat(result.expressions()).hasSize(1);
+        assertThat(((SingularExpression) result.expressions().get(0)).field).isEqualTo("lastName");
+    }
+
+    @Test
+    public void testStringsAreNeverCompared() {
+        var expressions = Expression.of("lastName", Operator.$eq, "ali")
+                .and(Expression.of("lastName", Operator.$eq, "ALI"))
+                .build();
+
+        ExpressionsOptimizer.Result result = ExpressionsOptimizer.optimize(expressions.getExpressions());
+
+        assertThat(result.unsatisfiable()).isFalse();
+        assertThat(result.expressions()).hasSize(2);
+    }
+
+    @Test
+    public void testEqualityWithinTheBoundsRemovesTheBounds() {
+        var expressions = Expression.of("age", Operator.$gt, 10)
+                .and(Expression.of("age", Operator.$eq, 20))
+                .and(Expression.of("age", Operator.$lt, 30))
+                .build();
+
+        List<Expression> list = ExpressionsOptimizer.optimize(expressions.getExpressions()).expressions();
+
+        assertThat(list).hasSize(1);
+        assertThat(((SingularExpression) list.get(0)).operator).isEqualTo(Operator.$eq);
+    }
+
+    @Test
+    public void testDeeplyNestedGroupsDontOverflowTheStack() {
+        Expression leaf = Expression.of("age", Operator.$gte, 0);
+        Expression expression = leaf;
+        for (int i = 0; i < 100_000; i++) {
+            expression = i % 2 == 0 ? Expression.and(expression, leaf) : Expression.or(expression);
+        }
+
+        ExpressionsOptimizer.Result result = ExpressionsOptimizer.optimize(List.of(expression));
+
+        assertThat(result.unsatisfiable()).isFalse();
+        assertThat(result.expressions()).containsExactly(leaf);
+    }
+
+    private static boolean unsatisfiable(Expression expression) {
+        return ExpressionsOptimizer.optimize(expression.build().getExpressions()).unsatisfiable();
+    }
+}
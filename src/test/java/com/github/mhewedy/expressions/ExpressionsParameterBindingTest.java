@@ -0,0 +1,93 @@
+package com.github.mhewedy.expressions;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.github.mhewedy.expressions.Operator.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the prepared statement cache hit rate (the ratio of the executed SQL statements that was seen before)
+ * with and without binding the values as parameters,
+ * the persistence provider is configured to inline the literals to make the difference visible.
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.github.mhewedy.expressions.SqlStatementRecorder"
+})
+@ContextConfiguration(classes = {JpaRepositoriesAutoConfiguration.class, DataSourceAutoConfiguration.class})
+@EntityScan("com.github.mhewedy.expressions")
+@EnableJpaRepositories(repositoryBaseClass = ExpressionsRepositoryImpl.class, basePackages = "com.github.mhewedy.expressions")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class ExpressionsParameterBindingTest {
+
+    private static final int QUERIES = 50;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @AfterEach
+    public void finish() {
+        ExpressionsConfig.getInstance().setBindParameters(false);
+    }
+
+    @Test
+    public void testStatementCacheHitRate() {
+        double literalsHitRate = statementCacheHitRate(false);
+        double parametersHitRate = statementCacheHitRate(true);
+
+        log.info("statement cache hit rate, literals: {}, parameters: {}", literalsHitRate, parametersHitRate);
+
+        assertThat(literalsHitRate).isEqualTo(0.0);
+        assertThat(parametersHitRate).isEqualTo((QUERIES - 1) / (double) QUERIES);
+    }
+
+    @Test
+    public void testPagedQueryWithBoundParameters() {
+        ExpressionsConfig.getInstance().setBindParameters(true);
+
+        Expressions expressions = Expression.of("firstName", $start, "a")
+                .and(Expression.of("age", $in, 10, 20))
+                .and(Expression.of("department.name", $ieq, "HR"))
+                .build();
+
+        assertThat(employeeRepository.findAll(expressions,
+                PageRequest.of(0, 10))).isEmpty();
+        assertThat(employeeRepository.count(expressions)).isEqualTo(0);
+    }
+
+    private double statementCacheHitRate(boolean bindParameters) {
+        ExpressionsConfig.getInstance().setBindParameters(bindParameters);
+        SqlStatementRecorder.STATEMENTS.clear();
+
+        for (int i = 0; i < QUERIES; i++) {
+            employeeRepository.findAll(Expression.of("firstName", $eq, "name" + i)
+                    .and(Expression.of("age", $gt, i))
+                    .build());
+        }
+
+        Set<String> seen = new HashSet<>();
+        int hits = 0;
+        for (String sql : SqlStatementRecorder.STATEMENTS) {
+            if (!seen.add(sql)) {
+                hits++;
+            }
+        }
+        return hits / (double) SqlStatementRecorder.STATEMENTS.size();
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.mhewedy.expressions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpressionsPlanCacheTest {
+
+    private final ExpressionsPlan plan = ExpressionsPlan.compile(null, List.of());
+
+    @Test
+    public void testLeastRecentlyUsedPlanIsEvicted() {
+        ExpressionsPlanCache cache = new ExpressionsPlanCache(2);
+
+        cache.get(null, "a", () -> plan);
+        cache.get(null, "b", () -> plan);
+        cache.get(null, "a", () -> plan);   // "a" is now the most recently used
+        cache.get(null, "c", () -> plan);   // evicts "b"
+        cache.get(null, "a", () -> plan);
+
+        ExpressionsPlanCache.Statistics stats = cache.getStatistics();
+        assertThat(stats.hitCount()).isEqualTo(2);
+        assertThat(stats.missCount()).isEqualTo(3);
+        assertThat(stats.evictionCount()).isEqualTo(1);
+        assertThat(stats.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testConcurrentHitsReturnTheCachedPlan() throws Exception {
+        ExpressionsPlanCache cache = new ExpressionsPlanCache(10);
+        cache.get(null, "a", () -> plan);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ExpressionsPlan>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(() -> cache.get(null, "a", () -> ExpressionsPlan.compile(null, List.of()))));
+            }
+            for (Future<ExpressionsPlan> future : futures) {
+                assertThat(future.get()).isSameAs(plan);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        ExpressionsPlanCache.Statistics stats = cache.getStatistics();
+        assertThat(stats.hitCount()).isEqualTo(1000);
+        assertThat(stats.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testShrinkingEvictsTheLeastRecentlyUsedPlans() {
+        ExpressionsPlanCache cache = new ExpressionsPlanCache(3);
+        ExpressionsPlan other = ExpressionsPlan.compile(null, List.of());
+
+        cache.get(null, "a", () -> plan);
+        cache.get(null, "b", () -> other);
+        cache.get(null, "c", () -> other);
+        cache.get(null, "a", () -> other);  // hit
+        cache.setMaximumSize(1);
+
+        assertThat(cache.get(null, "a", () -> other)).isSameAs(plan);
+        assertThat(cache.getStatistics().evictionCount()).isEqualTo(2);
+        assertThat(cache.getStatistics().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testZeroMaximumSizeDisablesTheCache() {
+        ExpressionsPlanCache cache = new ExpressionsPlanCache(0);
+
+        cache.get(null, "a", () -> plan);
+        cache.get(null, "a", () -> plan);
+
+        ExpressionsPlanCache.Statistics stats = cache.getStatistics();
+        assertThat(stats.hitCount()).isEqualTo(0);
+        assertThat(stats.missCount()).isEqualTo(2);
+        assertThat(stats.size()).isEqualTo(0);
+    }
+}
@@ -4,8 +4,11 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.mhewedy.expressions.model.*;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceUnitUtil;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Root;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -21,6 +24,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
@@ -32,9 +36,11 @@ import java.nio.file.Files;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.chrono.HijrahDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static com.github.mhewedy.expressions.Operator.*;
 import static com.github.mhewedy.expressions.model.Employee.Lang;
@@ -42,6 +48,7 @@ import static com.github.mhewedy.expressions.model.Status.ACTIVE;
 import static com.github.mhewedy.expressions.model.Status.NOT_ACTIVE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatList;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForClassTypes.fail;
 
 @Slf4j
@@ -620,6 +627,22 @@ public class ExpressionsRepositoryImplTest {
         // where e.h_birth_date>=?
     }
 
+    @Test
+    public void testTemporalValuesAreKeptInIsoFormat() throws Exception {
+        Expressions expressions = Expression.of("hBirthDate", $in, HijrahDate.of(1390, 9, 29), HijrahDate.of(1380, 10, 10))
+                .and(Expression.of("birthDate", $lt, LocalDate.of(1990, 1, 1)))
+                .build();
+
+        assertThat(expressions.extractFields()).extracting(Expressions.Field::value)
+                .containsExactlyInAnyOrder("1990-01-01", List.of("1390-09-29", "1380-10-10"));
+        assertThat(new ObjectMapper().writeValueAsString(expressions)).contains("\"1990-01-01\"");
+        assertThat(employeeRepository.findAll(expressions)).hasSize(1);
+
+        // compared as text to a string attribute
+        assertThat(employeeRepository.findAll(Expression.of("firstName", $eq, LocalDate.of(1990, 1, 1)).build()))
+                .isEmpty();
+    }
+
     @Test
     public void testCompositeIdUsingEmbeddable() throws Exception {
         String json = loadResourceJsonFile("testCompositeIdUsingEmbeddable");
@@ -880,6 +903,405 @@ public class ExpressionsRepositoryImplTest {
         });
     }
 
+    @Test
+    public void testPlanCacheIsReusedForSameShapeWithDifferentValues() {
+        ExpressionsPlanCache cache = ExpressionsPlanCache.getInstance();
+
+        employeeRepository.findAll(Expression.of("department.name", $eq, "plan-cache")
+                .and(Expression.of("age", $in, 10, 20)).build());
+        ExpressionsPlanCache.Statistics before = cache.getStatistics();
+
+        List<Employee> employeeList = employeeRepository.findAll(Expression.of("department.name", $eq, "hr")
+                .and(Expression.of("age", $in, 10, 40, 50)).build());
+        ExpressionsPlanCache.Statistics after = cache.getStatistics();
+
+        assertThat(employeeList.size()).isEqualTo(3);
+        assertThat(after.hitCount()).isEqualTo(before.hitCount() + 1);
+        assertThat(after.missCount()).isEqualTo(before.missCount());
+    }
+
+    @Test
+    public void testNestingUsingOneToManyJoin_Exists() throws Exception {
+        String json = loadResourceJsonFile("testNestingUsingOneToManyJoin");
+
+        Expressions expressions = new ObjectMapper().readValue(json, Expressions.class)
+                .collectionFilterMode(CollectionFilterMode.EXISTS);
+
+        Page<Employee> employeePage = employeeRepository.findAll(expressions, PageRequest.of(0, 2, Sort.by("id")));
+        assertThat(employeePage.getContent().size()).isEqualTo(2);
+        assertThat(employeePage.getTotalElements()).isEqualTo(5);
+        assertThat(employeeRepository.count(expressions)).isEqualTo(5);
+
+        // from employee e where exists(select 1 from task t where e.id=t.employee_id and t.name like ?)
+    }
+
+    @Test
+    public void testExistsMatchesTheSameCollectionElementWhenAnded() throws Exception {
+        String json = """
+                {
+                    "tasks.name": "fix hr",
+                    "tasks.status": "NOT_ACTIVE"
+                }
+                """;
+        Expressions expressions = new ObjectMapper().readValue(json, Expressions.class)
+                .collectionFilterMode(CollectionFilterMode.EXISTS);
+
+        List<Employee> employeeList = employeeRepository.findAll(expressions);
+        assertThat(employeeList.size()).isEqualTo(1);
+        assertThat(employeeList.get(0).firstName).isEqualTo("farida");
+
+        // from employee e where exists(select 1 from task t where e.id=t.employee_id and t.name=? and t.status=?)
+    }
+
+    @Test
+    public void testExistsMatchesTheSameCollectionElementWhenAndedInNestedGroups() {
+        Employee farida = employeeRepository.findAll(Expression.of("firstName", $eq, "farida").build()).get(0);
+        Long activeTask = farida.tasks.stream().filter(it -> it.status == ACTIVE).findFirst().orElseThrow().id;
+
+        // the active task of farida is not NOT_ACTIVE, farida has another task that is
+        Expressions flat = Expression.of("tasks.id", $eq, activeTask)
+                .and(Expression.of("tasks.name", $eq, "fix hr"))
+                .and(Expression.of("tasks.status", $eq, NOT_ACTIVE))
+                .build()
+                .collectionFilterMode(CollectionFilterMode.EXISTS);
+        Expressions nested = Expression.of("tasks.id", $eq, activeTask)
+                .and(Expression.and(
+                        Expression.of("tasks.name", $eq, "fix hr"),
+                        Expression.of("tasks.status", $eq, NOT_ACTIVE)
+                ))
+                .build()
+                .collectionFilterMode(CollectionFilterMode.EXISTS);
+
+        assertThat(employeeRepository.findAll(flat)).isEmpty();
+        assertThat(employeeRepository.findAll(nested)).isEmpty();
+
+        // from employee e where exists(select 1 from task t where e.id=t.employee_id and t.id=? and t.name=? and t.status=?)
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        Expressions expressions = new Expressions();
+        Sort sort = Sort.by("firstName");
+
+        List<String> firstNames = new ArrayList<>();
+        KeysetCursor cursor = KeysetCursor.first(4);
+        KeysetWindow<Employee> window;
+        do {
+            window = employeeRepository.findAll(expressions, sort, KeysetCursor.of(cursor.getToken(), 4));
+            window.getContent().forEach(it -> firstNames.add(it.firstName));
+            cursor = window.getNextCursor();
+        } while (window.hasNext());
+
+        assertThat(firstNames).containsExactly("ahmed", "farida", "fofo", "mohammad", "mostafa", "wael");
+
+        // where e.first_name>? or e.first_name=? and e.id>? order by e.first_name, e.id fetch first ? rows only
+    }
+
+    @Test
+    public void testKeysetPaginationUsingJoinedSortProperty() {
+        Expressions expressions = Expression.of("lastName", $eq, "ibrahim").build();
+        Sort sort = Sort.by(Sort.Order.asc("department.name"), Sort.Order.desc("age"));
+
+        KeysetWindow<Employee> first = employeeRepository.findAll(expressions, sort, KeysetCursor.first(2));
+        assertThat(first.getContent()).extracting(it -> it.firstName).containsExactly("wael", "ahmed");
+        assertThat(first.hasNext()).isTrue();
+
+        KeysetWindow<Employee> second = employeeRepository.findAll(expressions, sort, first.getNextCursor());
+        assertThat(second.getContent()).extracting(it -> it.firstName).containsExactly("mohammad");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testKeysetPaginationKeepsNullAssociationsOfSortProperties() {
+        Expressions expressions = Expression.of("lastName", $in, "abdullah", "bobo").build();
+        Sort sort = Sort.by("department.name");
+
+        KeysetWindow<Employee> window = employeeRepository.findAll(expressions, sort, KeysetCursor.first(10));
+        assertThat(window.getContent()).extracting(it -> it.firstName).containsExactly("farida", "fofo");
+        assertThat(window.hasNext()).isFalse();
+
+        // from employee e left join department d on d.id=e.department_id where e.last_name in (?,?)
+        // order by case when d.name is null then 1 else 0 end, d.name, e.id
+    }
+
+    @Test
+    public void testKeysetPaginationOfNullSortValues() {
+        // fofo has no department, the windows of a single row are positioned on the null value as well
+        assertThat(keysetFirstNames(Sort.by("department.name")))
+                .containsExactly("ahmed", "wael", "farida", "mohammad", "mostafa", "fofo");
+        assertThat(keysetFirstNames(Sort.by(Sort.Order.asc("department.name").nullsFirst())))
+                .containsExactly("fofo", "ahmed", "wael", "farida", "mohammad", "mostafa");
+        assertThat(keysetFirstNames(Sort.by(Sort.Order.desc("department.name"))))
+                .containsExactly("fofo", "mostafa", "mohammad", "ahmed", "wael", "farida");
+        assertThat(keysetFirstNames(Sort.by(Sort.Order.desc("department.name").nullsLast())))
+                .containsExactly("mostafa", "mohammad", "ahmed", "wael", "farida", "fofo");
+
+        // where d.name>? or d.name is null or d.name=? and e.id>?
+        // order by case when d.name is null then 1 else 0 end, d.name, e.id
+    }
+
+    private List<String> keysetFirstNames(Sort sort) {
+        List<String> firstNames = new ArrayList<>();
+        KeysetCursor cursor = KeysetCursor.first(1);
+        KeysetWindow<Employee> window;
+        do {
+            window = employeeRepository.findAll(new Expressions(), sort, KeysetCursor.of(cursor.getToken(), 1));
+            window.getContent().forEach(it -> firstNames.add(it.firstName));
+            cursor = window.getNextCursor();
+        } while (window.hasNext());
+        return firstNames;
+    }
+
+    @Test
+    public void testStreamAll() {
+        ExpressionsConfig config = ExpressionsConfig.getInstance();
+        int clearInterval = config.getStreamClearInterval();
+        config.setStreamClearInterval(2);
+
+        Expressions expressions = Expression.of("lastName", $ne, "bobo").build();
+
+        try (Stream<Employee> employees = employeeRepository.streamAll(expressions, Sort.by("firstName"))) {
+            List<String> firstNames = employees.map(it -> it.firstName).toList();
+            assertThat(firstNames).containsExactly("ahmed", "farida", "mohammad", "mostafa", "wael");
+        } finally {
+            config.setStreamClearInterval(clearInterval);
+        }
+    }
+
+    @Test
+    public void testStreamAllDetachesOnlyTheStreamedEntities() {
+        ExpressionsConfig config = ExpressionsConfig.getInstance();
+        int clearInterval = config.getStreamClearInterval();
+        config.setStreamClearInterval(1);
+
+        Book book = bookRepository.findAll().get(0);
+        Expressions expressions = Expression.of("lastName", $eq, "ibrahim").build();
+
+        try (Stream<Employee> employees = employeeRepository.streamAll(expressions, Sort.by("firstName"))) {
+            List<Employee> streamed = employees.toList();
+            assertThat(streamed).extracting(it -> it.firstName).containsExactly("ahmed", "mohammad", "wael");
+            // all but the last one are detached
+            assertThat(streamed).extracting(entityManager::contains).containsExactly(false, false, true);
+            assertThat(entityManager.contains(book)).isTrue();
+        } finally {
+            config.setStreamClearInterval(clearInterval);
+        }
+    }
+
+    @Test
+    public void testInterfaceProjection() {
+        Expressions expressions = Expression.of("lastName", $eq, "ibrahim").build();
+
+        Page<EmployeeNameView> page = employeeRepository.findAll(expressions, EmployeeNameView.class,
+                PageRequest.of(0, 2, Sort.by("firstName")));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(EmployeeNameView::getFirstName).containsExactly("ahmed", "mohammad");
+        assertThat(page.getContent()).extracting(EmployeeNameView::getDepartmentName).containsExactly("hr", "sw arch");
+
+        // select e.first_name, d.name from employee e left join department d on d.id=e.department_id where e.last_name=?
+    }
+
+    @Test
+    public void testRecordProjectionWithCollectionFilter() {
+        Expressions expressions = Expression.of("tasks.status", $eq, NOT_ACTIVE)
+                .or(Expression.of("lastName", $eq, "bobo"))
+                .build();
+
+        Page<EmployeeRecord> page = employeeRepository.findAll(expressions, EmployeeRecord.class,
+                PageRequest.of(0, 10, Sort.by("firstName")));
+
+        assertThat(page.getContent()).containsExactly(
+                new EmployeeRecord("farida", "farida ar", "hr"),
+                new EmployeeRecord("fofo", "fofo ar", null)
+        );
+
+        // the count query uses the same specification as the content query
+        Page<EmployeeRecord> first = employeeRepository.findAll(expressions, EmployeeRecord.class,
+                PageRequest.of(0, 1, Sort.by("firstName")));
+        assertThat(first.getContent()).containsExactly(new EmployeeRecord("farida", "farida ar", "hr"));
+        assertThat(first.getTotalElements()).isEqualTo(2);
+
+        // select e.first_name, e.employee_name_ar, d.name from employee e left join department d on d.id=e.department_id
+        // where exists(select 1 from task t where e.id=t.employee_id and t.status=?) or e.last_name=?
+    }
+
+    @Test
+    public void testFindSlice() {
+        Expressions expressions = Expression.of("lastName", $eq, "ibrahim").build();
+
+        Slice<Employee> first = employeeRepository.findSlice(expressions, PageRequest.of(0, 2, Sort.by("firstName")));
+        assertThat(first.getContent()).extracting(it -> it.firstName).containsExactly("ahmed", "mohammad");
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<Employee> second = employeeRepository.findSlice(expressions, first.nextPageable());
+        assertThat(second.getContent()).extracting(it -> it.firstName).containsExactly("wael");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testCountAtMost() throws Exception {
+        String json = loadResourceJsonFile("testNestingUsingOneToManyJoin");
+
+        Expressions expressions = new ObjectMapper().readValue(json, Expressions.class);
+
+        assertThat(employeeRepository.countAtMost(expressions, 3)).isEqualTo(3);
+        assertThat(employeeRepository.countAtMost(expressions, 100)).isEqualTo(5);
+
+        // the distinct ids are counted when the collection is joined
+        expressions.collectionFilterMode(CollectionFilterMode.DISTINCT_JOIN);
+        assertThat(employeeRepository.countAtMost(expressions, 3)).isEqualTo(3);
+        assertThat(employeeRepository.countAtMost(expressions, 100)).isEqualTo(5);
+
+        // select 1 from employee e where exists(select 1 from task t where e.id=t.employee_id and t.name like ?) fetch first ? rows only
+    }
+
+    @Test
+    public void testOptimizedExpressions() {
+        ExpressionsConfig config = ExpressionsConfig.getInstance();
+        config.setOptimizeExpressions(true);
+        try {
+            Expressions expressions = Expression.of("age", $gt, 5)
+                    .and(Expression.or(
+                            Expression.of("age", $eq, 10),
+                            Expression.of("age", $eq, 20)
+                    ))
+                    .and(Expression.of("age", $gte, 15))
+                    .build();
+
+            List<Employee> employees = employeeRepository.findAll(expressions);
+            assertThat(employees).extracting(it -> it.firstName).containsExactly("mohammad");
+
+            // select ... from employee e where e.age>=? and e.age in (?,?)
+
+            Expressions contradiction = Expression.of("age", $gt, 30)
+                    .and(Expression.of("age", $lt, 20))
+                    .build();
+
+            assertThat(employeeRepository.count(contradiction)).isZero();
+            assertThat(employeeRepository.findAll(contradiction, PageRequest.of(0, 10))).isEmpty();
+
+            // no query is executed
+        } finally {
+            config.setOptimizeExpressions(false);
+        }
+    }
+
+    @Test
+    public void testImmutableExpressions() {
+        ImmutableExpressions ibrahim = ImmutableExpressions.of(Expression.of("lastName", $eq, "ibrahim"));
+        ImmutableExpressions filter = ImmutableExpressions.builder()
+                .and(ibrahim)
+                .and(Expression.of("age", $gt, 10))
+                .build();
+
+        List<Employee> employees = employeeRepository.findAll(filter.toExpressions(), Sort.by("firstName"));
+        assertThat(employees).extracting(it -> it.firstName).containsExactly("mohammad", "wael");
+
+        assertThat(employeeRepository.count(ibrahim.toExpressions())).isEqualTo(3);
+    }
+
+    @Test
+    public void testJoinsOfDifferentTypesAreNotShared() {
+        Expressions expressions = Expression.of("<department.name", $eq, "hr")
+                .and(Expression.of("department.name", $ne, "it"))
+                .and(Expression.of("department.city.name", $eq, "cairo"))
+                .build();
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Employee> query = cb.createQuery(Employee.class);
+        Root<Employee> root = query.from(Employee.class);
+        query.where(expressions.<Employee>getSpecification().toPredicate(root, query, cb));
+
+        assertThat(root.getJoins()).extracting(Join::getJoinType)
+                .containsExactlyInAnyOrder(JoinType.LEFT, JoinType.INNER);
+        assertThat(entityManager.createQuery(query).getResultList()).extracting(it -> it.firstName)
+                .containsExactlyInAnyOrder("ahmed", "wael", "farida");
+    }
+
+    @Test
+    public void testFetchReusesTheFilterJoins() {
+        entityManager.flush();
+        entityManager.clear();
+
+        Expressions expressions = Expression.of("department.name", $eq, "hr").build();
+        List<Employee> employees = employeeRepository.findAll(expressions, Sort.by("firstName"),
+                ExpressionsFetch.paths("department.city", "tasks"));
+
+        assertThat(employees).extracting(it -> it.firstName).containsExactly("ahmed", "farida", "wael");
+        PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        assertThat(employees).allMatch(it -> util.isLoaded(it, "tasks"));
+    }
+
+    @Test
+    public void testFetchCollectionPagesByIds() {
+        entityManager.flush();
+        entityManager.clear();
+
+        Expressions expressions = Expression.of("lastName", $eq, "ibrahim").build();
+        Page<Employee> page = employeeRepository.findAll(expressions, PageRequest.of(0, 2, Sort.by("firstName")),
+                ExpressionsFetch.paths("tasks"));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(it -> it.firstName).containsExactly("ahmed", "mohammad");
+        assertThat(page.getContent()).allMatch(it -> it.tasks.size() == 2);
+
+        PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        assertThat(page.getContent()).allMatch(it -> util.isLoaded(it, "tasks"));
+    }
+
+    @Test
+    public void testIdsFirstPagination() {
+        for (int i = 0; i < 3; i++) {
+            PageRequest pageable = PageRequest.of(i, 1, Sort.by(Sort.Direction.DESC, "age"));
+            Page<Employee> offset = employeeRepository.findAll(
+                    Expression.of("tasks.name", $start, "fix").build(), pageable);
+            Page<Employee> idsFirst = employeeRepository.findAll(
+                    Expression.of("tasks.name", $start, "fix").build().paginationMode(PaginationMode.IDS_FIRST), pageable);
+
+            assertThat(idsFirst.getTotalElements()).isEqualTo(offset.getTotalElements());
+            assertThat(idsFirst.getContent()).extracting(it -> it.id)
+                    .isEqualTo(offset.getContent().stream().map(it -> it.id).toList());
+        }
+    }
+
+    @Test
+    public void testOutOfRangeValuesNameTheField() {
+        assertThatThrownBy(() -> employeeRepository.findAll(Expression.of("type", $eq, 40_000).build()))
+                .hasMessageContaining("invalid value of field type: value 40000 is out of the range of Short");
+        assertThatThrownBy(() -> employeeRepository.findAll(Expression.of("age", $in, 1, 3_000_000_000L).build()))
+                .hasMessageContaining("invalid value of field age");
+    }
+
+    @Test
+    public void testPrimitiveInLists() {
+        assertThat(employeeRepository.findAll(Expression.of("age", $in, new int[]{10, 30}).build()))
+                .extracting(it -> it.id)
+                .containsExactlyInAnyOrderElementsOf(employeeRepository.findAll(Expression.of("age", $in, 10, 30).build())
+                        .stream().map(it -> it.id).toList());
+
+        // int values converted to the Long id and the Short type
+        assertThat(employeeRepository.findAll(Expression.of("id", $in, new int[]{1, 2}).build()))
+                .extracting(it -> it.id).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(employeeRepository.findAll(Expression.of("id", $nin, new long[]{1, 2}).build()))
+                .extracting(it -> it.id).doesNotContain(1L, 2L);
+        assertThat(employeeRepository.findAll(Expression.of("type", $in, new int[]{1}).build()))
+                .hasSameSizeAs(employeeRepository.findAll(Expression.of("type", $eq, (short) 1).build()));
+
+        // long values out of the range of the Integer age are not truncated (to 10 here)
+        assertThatThrownBy(() -> employeeRepository.findAll(Expression.of("age", $in, new long[]{20, 4_294_967_306L}).build()))
+                .hasMessageContaining("invalid value of field age: value 4294967306 is out of the range of Integer");
+    }
+
+    public interface EmployeeNameView {
+        String getFirstName();
+
+        String getDepartmentName();
+    }
+
+    public record EmployeeRecord(String firstName, String nameAr, String departmentName) {
+    }
+
     @SneakyThrows
     private String loadResourceJsonFile(String name) {
         File file = ResourceUtils.getFile("classpath:" + name + ".json");
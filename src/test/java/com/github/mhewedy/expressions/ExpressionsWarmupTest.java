@@ -0,0 +1,98 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.model.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.EntityType;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.List;
+
+import static com.github.mhewedy.expressions.Operator.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ContextConfiguration(classes = {JpaRepositoriesAutoConfiguration.class, DataSourceAutoConfiguration.class})
+@EntityScan("com.github.mhewedy.expressions")
+@EnableJpaRepositories(repositoryBaseClass = ExpressionsRepositoryImpl.class, basePackages = "com.github.mhewedy.expressions")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Import(ExpressionsWarmupTest.WarmupConfig.class)
+public class ExpressionsWarmupTest {
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private ExpressionsWarmup warmup;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void testTemplatePlanIsCompiledAtStartup() {
+        ExpressionsPlanCache.Statistics before = ExpressionsPlanCache.getInstance().getStatistics();
+
+        List<Employee> employees = employeeRepository.findAll(Expression.of("lastName", $eq, "ibrahim")
+                .and(Expression.of("department.name", $in, "hr", "it")).build());
+
+        ExpressionsPlanCache.Statistics after = ExpressionsPlanCache.getInstance().getStatistics();
+        assertThat(employees).isEmpty();
+        assertThat(after.hitCount()).isEqualTo(before.hitCount() + 1);
+        assertThat(after.missCount()).isEqualTo(before.missCount());
+    }
+
+    @Test
+    public void testOnlyTheConfiguredFieldsAreResolved() {
+        EntityType<Employee> employee = entityManager.getMetamodel().entity(Employee.class);
+        FieldPath.clear();
+        warmup.afterSingletonsInstantiated();
+
+        // the attributes of the entity, the given fields and the fields of the templates
+        int size = FieldPath.size(employee);
+        FieldPath.of(employee, "lastName");
+        FieldPath.of(employee, "name.ar");
+        FieldPath.of(employee, "department.city.name");
+        FieldPath.of(employee, "department.name");
+        assertThat(FieldPath.size(employee)).isEqualTo(size);
+
+        // the associations are not followed otherwise
+        FieldPath.of(employee, "tasks.status");
+        assertThat(FieldPath.size(employee)).isEqualTo(size + 1);
+    }
+
+    @Test
+    public void testRuntimeHints() {
+        RuntimeHints hints = new RuntimeHints();
+        new ExpressionsRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertThat(RuntimeHintsPredicates.reflection().onType(ExpressionsRepositoryImpl.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(Expressions.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(KeysetCursor.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(KeysetCursor.class, "getToken")).accepts(hints);
+    }
+
+    @TestConfiguration
+    static class WarmupConfig {
+
+        @Bean
+        public ExpressionsWarmup expressionsWarmup() {
+            return new ExpressionsWarmup()
+                    .fields(Employee.class, "department.city.name")
+                    .template(Employee.class, Expression.of("lastName", $eq, "")
+                            .and(Expression.of("department.name", $in, List.of(""))).build());
+        }
+    }
+}
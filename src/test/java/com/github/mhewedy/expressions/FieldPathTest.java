@@ -0,0 +1,80 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.model.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.metamodel.ManagedType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ContextConfiguration(classes = {JpaRepositoriesAutoConfiguration.class, DataSourceAutoConfiguration.class})
+@EntityScan("com.github.mhewedy.expressions")
+@EnableJpaRepositories(repositoryBaseClass = ExpressionsRepositoryImpl.class, basePackages = "com.github.mhewedy.expressions")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class FieldPathTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private ManagedType<Employee> employee;
+
+    @BeforeEach
+    public void setup() {
+        employee = entityManager.getMetamodel().managedType(Employee.class);
+        FieldPath.clear();
+    }
+
+    @Test
+    public void testPathIsResolvedOnce() {
+        FieldPath path = FieldPath.of(employee, "birthDate");
+
+        assertThat(path.hops).isEmpty();
+        assertThat(path.javaType).isEqualTo(LocalDate.class);
+        assertThat(FieldPath.of(employee, "birthDate")).isSameAs(path);
+    }
+
+    @Test
+    public void testJoinTypes() {
+        assertThat(FieldPath.of(employee, "department.city.name").hops)
+                .extracting(ExpressionsPlan.Hop::joinType).containsExactly(JoinType.INNER, JoinType.INNER);
+        assertThat(FieldPath.of(employee, "<department.city?.name").hops)
+                .extracting(ExpressionsPlan.Hop::joinType).containsExactly(JoinType.LEFT, JoinType.LEFT);
+        assertThat(FieldPath.of(employee, ">department.name").hops)
+                .extracting(ExpressionsPlan.Hop::name).containsExactly("department");
+        assertThat(FieldPath.of(employee, ">department.name").hops[0].joinType()).isEqualTo(JoinType.RIGHT);
+    }
+
+    @Test
+    public void testEmbeddedAndCollectionPaths() {
+        FieldPath name = FieldPath.of(employee, "name.ar");
+        assertThat(name.hops).isEmpty();
+        assertThat(name.embedded.getName()).isEqualTo("ar");
+        assertThat(name.javaType).isEqualTo(String.class);
+
+        FieldPath tasks = FieldPath.of(employee, "tasks.name");
+        assertThat(tasks.pluralHop).isEqualTo(0);
+        assertThat(tasks.distinct).isTrue();
+    }
+
+    @Test
+    public void testUnknownField() {
+        assertThatThrownBy(() -> FieldPath.of(employee, "department.notFound"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("[notFound]");
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.Expression.AndExpression;
+import com.github.mhewedy.expressions.Expression.ListExpression;
+import com.github.mhewedy.expressions.Expression.OrExpression;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.mhewedy.expressions.Operator.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImmutableExpressionsTest {
+
+    @Test
+    public void testCompositionSharesTheOperands() {
+        ImmutableExpressions tenant = ImmutableExpressions.of(Expression.of("tenant", $eq, 1));
+        ImmutableExpressions first = tenant.and(Expression.of("age", $gt, 10));
+        ImmutableExpressions second = tenant.or(Expression.of("age", $lt, 5));
+
+        assertThat(tenant.getExpressions()).hasSize(1);
+        assertThat(first.getExpressions()).hasSize(2);
+        assertThat(second.getExpressions()).hasSize(1).first().isInstanceOf(OrExpression.class);
+    }
+
+    @Test
+    public void testDeepCompositionIsFlattened() {
+        ImmutableExpressions and = ImmutableExpressions.EMPTY;
+        ImmutableExpressions or = ImmutableExpressions.of(Expression.of("age", $eq, -1));
+        for (int i = 0; i < 10_000; i++) {
+            and = and.and(Expression.of("age", $ne, i));
+            or = or.or(Expression.of("age", $eq, i));
+        }
+
+        assertThat(and.getExpressions()).hasSize(10_000);
+        assertThat(or.getExpressions()).hasSize(1);
+        assertThat(((OrExpression) or.getExpressions().get(0)).expressions).hasSize(10_001);
+    }
+
+    @Test
+    public void testBuilderAccumulatesIntoASingleGroup() {
+        ImmutableExpressions expressions = ImmutableExpressions.builder()
+                .and(Expression.of("firstName", $eq, "ahmed"))
+                .and(ImmutableExpressions.EMPTY)
+                .and(ImmutableExpressions.of(Expression.of("age", $in, 10, 20).or(Expression.of("active", $eq, true))))
+                .build();
+
+        List<Expression> list = expressions.getExpressions();
+        assertThat(list).hasSize(2);
+        assertThat(list.get(1)).isInstanceOf(OrExpression.class);
+        assertThat(ImmutableExpressions.builder().build()).isSameAs(ImmutableExpressions.EMPTY);
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        ImmutableExpressions a = ImmutableExpressions.of(Expression.of("lastName", $eq, "ibrahim"))
+                .and(Expression.of("age", $in, 10, 20));
+        ImmutableExpressions b = ImmutableExpressions.builder()
+                .and(Expression.of("lastName", $eq, "ibrahim"))
+                .and(Expression.of("age", $in, 10, 20))
+                .build();
+        ImmutableExpressions c = ImmutableExpressions.of(Expression.of("lastName", $eq, "ibrahim"))
+                .and(Expression.of("age", $in, 10, 30));
+
+        assertThat(a).isEqualTo(b).hasSameHashCodeAs(b).isNotEqualTo(c);
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterChanges() {
+        List<Object> values = new ArrayList<>(List.of(10, 20));
+        Expressions expressions = Expression.of("age", $in, values).build();
+
+        ImmutableExpressions snapshot = ImmutableExpressions.of(expressions);
+        values.add(30);
+        expressions.and(Expression.of("firstName", $eq, "ahmed"));
+
+        Expression expression = snapshot.getExpressions().get(0);
+        while (expression instanceof AndExpression and) {
+            expression = and.expressions.get(0);
+        }
+        assertThat(((ListExpression) expression).values).containsExactly(10, 20);
+    }
+
+    @Test
+    public void testToExpressionsComposesWithoutMaterializing() {
+        Expressions expressions = ImmutableExpressions.of(Expression.of("firstName", $eq, "ahmed"))
+                .and(Expression.of("age", $gt, 10))
+                .toExpressions()
+                .or(Expression.of("lastName", $eq, "ali"));
+
+        List<Expression> list = expressions.getExpressions();
+        assertThat(list).hasSize(1).first().isInstanceOf(OrExpression.class);
+        assertThat(expressions.extractFields()).extracting(Expressions.Field::name)
+                .containsExactly("lastName", "firstName", "age");
+    }
+}
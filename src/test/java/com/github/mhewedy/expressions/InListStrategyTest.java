@@ -0,0 +1,153 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.model.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.mhewedy.expressions.Operator.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.github.mhewedy.expressions.SqlStatementRecorder"
+})
+@ContextConfiguration(classes = {JpaRepositoriesAutoConfiguration.class, DataSourceAutoConfiguration.class})
+@EntityScan("com.github.mhewedy.expressions")
+@EnableJpaRepositories(repositoryBaseClass = ExpressionsRepositoryImpl.class, basePackages = "com.github.mhewedy.expressions")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class InListStrategyTest {
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    public void setup() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Employee employee = new Employee();
+            employee.firstName = "name " + i;
+            employee.age = i;
+            employees.add(employee);
+        }
+        ids = employeeRepository.saveAll(employees).stream().map(it -> it.id).toList();
+    }
+
+    @AfterEach
+    public void finish() {
+        ExpressionsConfig.getInstance().setBindParameters(false);
+        ExpressionsConfig.getInstance().setInListStrategy(InListStrategy.individual());
+    }
+
+    @Test
+    public void testPaddedSize() {
+        assertThat(InListStrategies.paddedSize(0)).isEqualTo(0);
+        assertThat(InListStrategies.paddedSize(1)).isEqualTo(1);
+        assertThat(InListStrategies.paddedSize(5)).isEqualTo(8);
+        assertThat(InListStrategies.paddedSize(8)).isEqualTo(8);
+        assertThat(InListStrategies.paddedSize(1000)).isEqualTo(1024);
+    }
+
+    @Test
+    public void testPaddedListsShareTheSameStatement() {
+        ExpressionsConfig.getInstance().setBindParameters(true);
+        ExpressionsConfig.getInstance().setInListStrategy(InListStrategy.padded());
+
+        SqlStatementRecorder.STATEMENTS.clear();
+        for (int size = 5; size <= 8; size++) {
+            assertThat(employeeRepository.findAll(Expression.of("id", $in, ids.subList(0, size)).build()))
+                    .hasSize(size);
+        }
+        assertThat(distinctSelects()).hasSize(1);
+    }
+
+    @Test
+    public void testChunkedLists() {
+        ExpressionsConfig.getInstance().setInListStrategy(InListStrategy.chunked(3));
+
+        assertThat(employeeRepository.findAll(Expression.of("id", $in, ids.subList(0, 7)).build()))
+                .extracting(it -> it.id).containsExactlyInAnyOrderElementsOf(ids.subList(0, 7));
+        assertThat(employeeRepository.count(Expression.of("id", $nin, ids.subList(0, 7)).build()))
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void testLargeListBySize() {
+        ExpressionsConfig.getInstance().setBindParameters(true);
+        ExpressionsConfig.getInstance().setInListStrategy(
+                InListStrategy.bySize(4, InListStrategy.individual(), InListStrategy.chunked(1000)));
+
+        List<Object> values = new ArrayList<>(ids);
+        for (long i = 0; i < 5_000; i++) {
+            values.add(-i);
+        }
+        assertThat(employeeRepository.count(Expression.of("id", $in, values).build())).isEqualTo(10);
+        assertThat(employeeRepository.count(Expression.of("age", $in, 1, 2, 3).build())).isEqualTo(3);
+    }
+
+    @Test
+    public void testArrayParameterWithoutBindingTheOtherValues() {
+        // the default configuration passes the values as literals, the array is bound as a parameter still
+        ExpressionsConfig.getInstance().setInListStrategy(InListStrategy.array("array_contains"));
+
+        SqlStatementRecorder.STATEMENTS.clear();
+        for (int size = 2; size <= 3; size++) {
+            assertThat(employeeRepository.findAll(Expression.of("id", $in, ids.subList(0, size)).build()))
+                    .extracting(it -> it.id).containsExactlyInAnyOrderElementsOf(ids.subList(0, size));
+        }
+        assertThat(distinctSelects()).hasSize(1);
+        assertThat(employeeRepository.count(Expression.of("id", $nin, ids.subList(0, 7)).build())).isEqualTo(3);
+    }
+
+    @Test
+    public void testArrayParameterOnQueriesCreatedByTheCaller() {
+        // no parameter can be bound on the queries created by the caller, so the values are passed one by one
+        ExpressionsConfig.getInstance().setInListStrategy(InListStrategy.array("array_contains"));
+        ExpressionsConfig.getInstance().setBindParameters(true);
+
+        Expressions expressions = Expression.of("id", $in, ids.subList(0, 3)).build();
+        Specification<Employee> specification = Specification.where(expressions.<Employee>getSpecification())
+                .and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("age"), 1));
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Employee> query = cb.createQuery(Employee.class);
+        Root<Employee> root = query.from(Employee.class);
+        query.where(specification.toPredicate(root, query, cb));
+
+        assertThat(entityManager.createQuery(query).getResultList())
+                .extracting(it -> it.id).containsExactlyInAnyOrderElementsOf(ids.subList(1, 3));
+    }
+
+    private Set<String> distinctSelects() {
+        Set<String> selects = new HashSet<>();
+        for (String sql : SqlStatementRecorder.STATEMENTS) {
+            if (sql.startsWith("select")) {     // the inserts of the setup are flushed by the first query
+                selects.add(sql);
+            }
+        }
+        return selects;
+    }
+}
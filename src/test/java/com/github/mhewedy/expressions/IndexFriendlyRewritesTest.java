@@ -0,0 +1,127 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.model.Category;
+import com.github.mhewedy.expressions.model.Employee;
+import com.github.mhewedy.expressions.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.List;
+
+import static com.github.mhewedy.expressions.Operator.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.github.mhewedy.expressions.SqlStatementRecorder"
+})
+@ContextConfiguration(classes = {JpaRepositoriesAutoConfiguration.class, DataSourceAutoConfiguration.class})
+@EntityScan("com.github.mhewedy.expressions")
+@EnableJpaRepositories(repositoryBaseClass = ExpressionsRepositoryImpl.class, basePackages = "com.github.mhewedy.expressions")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class IndexFriendlyRewritesTest {
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private ProductRepository productRepository;
+
+    @BeforeEach
+    public void setup() {
+        employeeRepository.saveAll(List.of(employee("abc"), employee("abd"), employee("ab"), employee("ab%c")));
+        productRepository.saveAll(List.of(
+                new Product(null, "abc", new Category("Sales")),
+                new Product(null, "abd", new Category("sales support")),
+                new Product(null, "ab", new Category("HR")),
+                new Product(null, "ab%c", new Category("hr"))
+        ));
+    }
+
+    @AfterEach
+    public void finish() {
+        ExpressionsConfig.getInstance().setPrefixMatchAsRange(false);
+        ExpressionsConfig.getInstance().setBindParameters(false);
+    }
+
+    @Test
+    public void testPrefixUpperBound() {
+        assertThat(ExpressionsPredicateBuilder.prefixUpperBound("abc")).isEqualTo("abd");
+        assertThat(ExpressionsPredicateBuilder.prefixUpperBound("ab" + Character.MAX_VALUE)).isEqualTo("ac");
+        assertThat(ExpressionsPredicateBuilder.prefixUpperBound(String.valueOf(Character.MAX_VALUE))).isNull();
+    }
+
+    @Test
+    public void testStringColumnsAreNotCast() {
+        SqlStatementRecorder.STATEMENTS.clear();
+        assertThat(employeeRepository.findAll(Expression.of("lastName", $contains, "b").build())).hasSize(4);
+        assertThat(lastSelect()).doesNotContain("cast(");
+
+        // still cast for the other types
+        employeeRepository.findAll(Expression.of("age", $contains, 1).build());
+        assertThat(lastSelect()).contains("cast(");
+    }
+
+    @Test
+    public void testPrefixMatchAsRange() {
+        List<Employee> like = employeeRepository.findAll(Expression.of("lastName", $start, "abc").build());
+
+        for (boolean bind : new boolean[]{false, true}) {
+            ExpressionsConfig.getInstance().setBindParameters(bind);
+            ExpressionsConfig.getInstance().setPrefixMatchAsRange(true);
+
+            SqlStatementRecorder.STATEMENTS.clear();
+            List<Employee> range = employeeRepository.findAll(Expression.of("lastName", $start, "abc").build());
+            assertThat(lastSelect()).doesNotContain(" like ").contains(">=");
+            assertThat(range).extracting(it -> it.lastName).containsExactly("abc")
+                    .isEqualTo(like.stream().map(it -> it.lastName).toList());
+        }
+    }
+
+    @Test
+    public void testPrefixWithWildcardsIsMatchedUsingLike() {
+        ExpressionsConfig.getInstance().setPrefixMatchAsRange(true);
+
+        SqlStatementRecorder.STATEMENTS.clear();
+        assertThat(employeeRepository.findAll(Expression.of("lastName", $start, "ab%").build())).hasSize(4);
+        assertThat(lastSelect()).contains(" like ");
+    }
+
+    @Test
+    public void testCaseInsensitiveUsingTheNormalizedAttribute() {
+        SqlStatementRecorder.STATEMENTS.clear();
+        assertThat(productRepository.findAll(Expression.of("category.name", $ieq, "SALES").build()))
+                .extracting(it -> it.name).containsExactly("abc");
+        assertThat(lastSelect()).contains("normalized_name").doesNotContain("lower(");
+
+        assertThat(productRepository.findAll(Expression.of("category.name", $icontains, "Sales").build()))
+                .hasSize(2);
+        assertThat(lastSelect()).contains("normalized_name").doesNotContain("lower(");
+
+        ExpressionsConfig.getInstance().setPrefixMatchAsRange(true);
+        assertThat(productRepository.findAll(Expression.of("category.name", $istart, "Hr").build()))
+                .extracting(it -> it.name).containsExactlyInAnyOrder("ab", "ab%c");
+        assertThat(lastSelect()).contains("normalized_name").doesNotContain(" like ");
+    }
+
+    private static Employee employee(String lastName) {
+        Employee employee = new Employee();
+        employee.lastName = lastName;
+        return employee;
+    }
+
+    private static String lastSelect() {
+        List<String> selects = SqlStatementRecorder.STATEMENTS.stream()
+                .filter(it -> it.startsWith("select"))
+                .toList();
+        return selects.get(selects.size() - 1).toLowerCase();
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.model.Product;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductRepository extends ExpressionsRepository<Product, Long> {
+}
@@ -0,0 +1,21 @@
+package com.github.mhewedy.expressions;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records the SQL statements issued by Hibernate, registered using the
+ * {@code hibernate.session_factory.statement_inspector} property.
+ */
+public class SqlStatementRecorder implements StatementInspector {
+
+    static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+}
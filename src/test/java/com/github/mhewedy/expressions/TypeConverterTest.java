@@ -0,0 +1,94 @@
+package com.github.mhewedy.expressions;
+
+import com.github.mhewedy.expressions.model.Employee.Lang;
+import com.github.mhewedy.expressions.model.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.chrono.HijrahDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TypeConverterTest {
+
+    @AfterEach
+    public void finish() {
+        ExpressionsConfig.getInstance().removeValueConverter(HijrahDate.class);
+    }
+
+    @Test
+    public void testConvertersAreResolvedOncePerType() {
+        assertThat(TypeConverter.of(Long.class)).isSameAs(TypeConverter.of(Long.class));
+        assertThat(TypeConverter.of(long.class)).isSameAs(TypeConverter.of(Long.class));
+    }
+
+    @Test
+    public void testEnums() {
+        TypeConverter converter = TypeConverter.of(Status.class);
+
+        assertThat(converter.convert("NOT_ACTIVE")).isEqualTo(Status.NOT_ACTIVE);
+        assertThat(converter.convert(0)).isEqualTo(Status.ACTIVE);
+        assertThat(TypeConverter.of(Lang.class).convert(Lang.AR)).isEqualTo(Lang.AR);
+        assertThatThrownBy(() -> converter.convert("NOT_EXISTS"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("No enum constant");
+    }
+
+    @Test
+    public void testNumbers() {
+        assertThat(TypeConverter.of(Long.class).convert(10)).isEqualTo(10L);
+        assertThat(TypeConverter.of(Short.class).convert(10)).isEqualTo((short) 10);
+        assertThat(TypeConverter.of(Double.class).convert(10)).isEqualTo(10.0);
+        assertThat(TypeConverter.of(BigDecimal.class).convert(10.5)).isEqualTo(new BigDecimal("10.5"));
+
+        // decimals are not truncated, nor the strings parsed
+        assertThat(TypeConverter.of(Integer.class).convert(10.5)).isEqualTo(10.5);
+        assertThat(TypeConverter.of(Integer.class).convert("10")).isEqualTo("10");
+    }
+
+    @Test
+    public void testIntegralValuesAreNotTruncated() {
+        assertThat(TypeConverter.of(Integer.class).convert((long) Integer.MIN_VALUE)).isEqualTo(Integer.MIN_VALUE);
+        assertThat(TypeConverter.of(Byte.class).convert(-128)).isEqualTo((byte) -128);
+
+        assertThatThrownBy(() -> TypeConverter.of(Integer.class).convert(Integer.MAX_VALUE + 1L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("value 2147483648 is out of the range of Integer");
+        assertThatThrownBy(() -> TypeConverter.of(Short.class).convert(40_000))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("value 40000 is out of the range of Short");
+        assertThatThrownBy(() -> TypeConverter.of(Byte.class).convert(128))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("value 128 is out of the range of Byte");
+    }
+
+    @Test
+    public void testListsAreCopiedOnlyIfConverted() {
+        List<Object> longs = Arrays.asList(10L, 20L);
+        assertThat(TypeConverter.of(Long.class).convert(longs)).isSameAs(longs);
+
+        List<Object> mixed = Arrays.asList(10L, 20, null);
+        assertThat(TypeConverter.of(Long.class).convert(mixed)).containsExactly(10L, 20L, null);
+
+        List<Object> dates = Arrays.asList("2020-01-01", LocalDate.of(2021, 1, 1));
+        assertThat(TypeConverter.of(LocalDate.class).convert(dates))
+                .containsExactly(LocalDate.of(2020, 1, 1), LocalDate.of(2021, 1, 1));
+    }
+
+    @Test
+    public void testRegisteredConverterReplacesTheBuiltInOne() {
+        ExpressionsConfig.getInstance().registerValueConverter(HijrahDate.class,
+                value -> DateTimeUtil.parseHijrah(((String) value).replace('/', '-')));
+
+        assertThat(TypeConverter.of(HijrahDate.class).convert("1390/09/29")).isEqualTo(HijrahDate.of(1390, 9, 29));
+
+        ExpressionsConfig.getInstance().removeValueConverter(HijrahDate.class);
+        assertThatThrownBy(() -> TypeConverter.of(HijrahDate.class).convert("1390/09/29"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.mhewedy.expressions.model;
+
+import com.github.mhewedy.expressions.CaseInsensitive;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import lombok.NoArgsConstructor;
+
+@Entity
+@NoArgsConstructor
+public class Category {
+
+    @Id
+    @GeneratedValue
+    public Long id;
+    @CaseInsensitive(normalizedBy = "normalizedName")
+    public String name;
+    public String normalizedName;
+
+    public Category(String name) {
+        this.name = name;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void normalize() {
+        normalizedName = name == null ? null : name.toLowerCase();
+    }
+}
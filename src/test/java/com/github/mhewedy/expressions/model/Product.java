@@ -0,0 +1,22 @@
+package com.github.mhewedy.expressions.model;
+
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToOne;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class Product {
+
+    @Id
+    @GeneratedValue
+    public Long id;
+    public String name;
+    @ManyToOne(cascade = CascadeType.PERSIST)
+    public Category category;
+}